@@ -0,0 +1,148 @@
+package ru.yandex.practicum.service.public_service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.service.public_service.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Slf4j
+public class AsyncHitShipper {
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMs;
+    private final Consumer<List<EndpointHitDto>> sender;
+    private final Thread worker;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter sentCounter;
+    private final Counter overflowCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running = true;
+
+    public AsyncHitShipper(int capacity,
+                           int batchSize,
+                           long flushIntervalMs,
+                           OverflowPolicy overflowPolicy,
+                           long offerTimeoutMs,
+                           Consumer<List<EndpointHitDto>> sender,
+                           MeterRegistry registry) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.sender = sender;
+
+        Gauge.builder("stats.client.queue.depth", queue, BlockingQueue::size)
+                .register(registry);
+        batchSizeSummary = DistributionSummary.builder("stats.client.batch.size")
+                .register(registry);
+        sentCounter = Counter.builder("stats.client.hits.sent")
+                .register(registry);
+        overflowCounter = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "overflow")
+                .register(registry);
+        failedCounter = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "send_failure")
+                .register(registry);
+
+        worker = new Thread(this::run, "stats-hit-shipper");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void offer(EndpointHitDto hit) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        overflowCounter.increment();
+                    }
+                }
+                break;
+            case BLOCK:
+                try {
+                    if (!queue.offer(hit, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        overflowCounter.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    overflowCounter.increment();
+                }
+                break;
+            default:
+                if (!queue.offer(hit)) {
+                    overflowCounter.increment();
+                }
+        }
+    }
+
+    public void close(long timeoutMs) {
+        running = false;
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            ship(batch);
+        }
+
+        List<EndpointHitDto> rest = new ArrayList<>(batchSize);
+        while (queue.drainTo(rest, batchSize) > 0) { // досылаем остаток очереди при остановке
+            ship(rest);
+            rest = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void collect(List<EndpointHitDto> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            EndpointHitDto hit = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (hit == null) {
+                return;
+            }
+            batch.add(hit);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void ship(List<EndpointHitDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(batch.size());
+        try {
+            sender.accept(batch);
+            sentCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("failed to ship {} hits: {}", batch.size(), e.getMessage());
+            failedCounter.increment(batch.size());
+        }
+    }
+}
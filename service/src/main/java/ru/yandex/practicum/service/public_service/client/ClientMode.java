@@ -0,0 +1,7 @@
+package ru.yandex.practicum.service.public_service.client;
+
+public enum ClientMode {
+    SYNC,
+    ASYNC,
+    SPOOL
+}
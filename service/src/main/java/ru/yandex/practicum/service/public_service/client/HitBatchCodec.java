@@ -0,0 +1,85 @@
+package ru.yandex.practicum.service.public_service.client;
+
+import ru.yandex.practicum.service.public_service.dto.EndpointHitDto;
+import ru.yandex.practicum.service.shared.model.DateTimeFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// application/x-ewm-hit-batch: версия, словарь повторяющихся app/uri, число хитов и сами хиты;
+// хит - ссылка на app, ссылка на uri, ip, timestamp в миллисекундах от эпохи (LocalDateTime в UTC);
+// ссылка 0 - строка идёт следом, k - k-я строка словаря; числа и длины строк - varint.
+// Формат продублирован в ru.yandex.practicum.statistics.dto.HitBatchCodec
+public final class HitBatchCodec {
+    public static final String CONTENT_TYPE = "application/x-ewm-hit-batch";
+    private static final int VERSION = 1;
+    private static final DateTimeFormatter FORMATTER = new DateTimeFormat().getFormatter();
+
+    private HitBatchCodec() {
+    }
+
+    public static byte[] encode(List<EndpointHitDto> hits) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (EndpointHitDto hit : hits) {
+            counts.merge(hit.getApp(), 1, Integer::sum);
+            counts.merge(hit.getUri(), 1, Integer::sum);
+        }
+        // в словарь попадают только строки, которые встречаются больше одного раза
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (EndpointHitDto hit : hits) {
+            for (String value : List.of(hit.getApp(), hit.getUri())) {
+                if (counts.get(value) > 1 && !dictionary.containsKey(value)) {
+                    dictionary.put(value, dictionary.size() + 1);
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * hits.size() + 64);
+        out.write(VERSION);
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        writeVarLong(out, hits.size());
+        for (EndpointHitDto hit : hits) {
+            writeRef(out, dictionary, hit.getApp());
+            writeRef(out, dictionary, hit.getUri());
+            writeString(out, hit.getIp());
+            writeVarLong(out, LocalDateTime.parse(hit.getTimestamp(), FORMATTER)
+                    .toInstant(ZoneOffset.UTC)
+                    .toEpochMilli());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeRef(ByteArrayOutputStream out, Map<String, Integer> dictionary, String value) {
+        Integer ref = dictionary.get(value);
+        if (ref != null) {
+            writeVarLong(out, ref);
+        } else {
+            writeVarLong(out, 0);
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
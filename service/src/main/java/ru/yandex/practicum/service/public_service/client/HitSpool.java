@@ -0,0 +1,413 @@
+package ru.yandex.practicum.service.public_service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.yandex.practicum.service.public_service.dto.EndpointHitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// хиты сначала пишутся в отображённые в память сегменты на диске, отдельный поток досылает их пачками;
+// запись: длина, crc32, время записи в спул, затем app, uri, ip и timestamp
+@Slf4j
+public class HitSpool {
+    private static final int HEADER_BYTES = 16;
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String OFFSET_FILE = "replay.offset";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final int batchSize;
+    private final long replayIntervalMs;
+    private final Consumer<List<EndpointHitDto>> sender;
+    private final Object lock = new Object();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final Thread replayer;
+    private final Counter spooledCounter;
+    private final Counter sentCounter;
+    private final Counter droppedCounter;
+    private final Counter invalidCounter;
+    private final Counter rejectedCounter;
+
+    private Segment writeSegment;
+    private Segment readSegment;
+    private int readOffset;
+    private volatile long oldestPendingMillis;
+    private volatile boolean running = true;
+
+    public HitSpool(Path dir,
+                    int segmentBytes,
+                    long maxBytes,
+                    int batchSize,
+                    long replayIntervalMs,
+                    Consumer<List<EndpointHitDto>> sender,
+                    MeterRegistry registry) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.batchSize = batchSize;
+        this.replayIntervalMs = replayIntervalMs;
+        this.sender = sender;
+
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open hit spool " + dir, e);
+        }
+
+        Gauge.builder("stats.client.spool.bytes", pendingBytes, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("stats.client.spool.replay.lag", this, HitSpool::getReplayLagSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+        spooledCounter = Counter.builder("stats.client.hits.spooled")
+                .register(registry);
+        sentCounter = Counter.builder("stats.client.hits.sent")
+                .register(registry);
+        droppedCounter = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "spool_full")
+                .register(registry);
+        invalidCounter = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "invalid")
+                .register(registry);
+        rejectedCounter = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "rejected")
+                .register(registry);
+
+        replayer = new Thread(this::replay, "stats-hit-spool-replayer");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    // не бросает исключений: хит, который некуда записать или нельзя закодировать, только учитывается в метрике
+    public void append(EndpointHitDto hit) {
+        byte[] payload;
+        try {
+            payload = encode(hit);
+        } catch (RuntimeException e) {
+            // writeUTF не принимает null и строки длиннее 65535 байт
+            log.warn("cannot spool hit: {}", e.toString());
+            invalidCounter.increment();
+            return;
+        }
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            droppedCounter.increment();
+            return;
+        }
+
+        synchronized (lock) {
+            // проверка и резерв под одной блокировкой, иначе одновременные записи вместе превысят max-bytes
+            if (pendingBytes.get() + size > maxBytes) {
+                droppedCounter.increment();
+                return;
+            }
+            try {
+                if (writeSegment.buffer.remaining() < size) {
+                    writeSegment.buffer.force();
+                    writeSegment = Segment.open(segmentPath(writeSegment.seq + 1), writeSegment.seq + 1,
+                            segmentBytes, FileChannel.MapMode.READ_WRITE);
+                }
+            } catch (IOException e) {
+                log.warn("cannot roll hit spool segment: {}", e.getMessage());
+                droppedCounter.increment();
+                return;
+            }
+            ByteBuffer buffer = writeSegment.buffer;
+            buffer.putInt(payload.length);
+            buffer.putInt(crc(payload));
+            buffer.putLong(System.currentTimeMillis());
+            buffer.put(payload);
+            pendingBytes.addAndGet(size);
+        }
+        spooledCounter.increment();
+    }
+
+    public void close(long timeoutMs) {
+        running = false;
+        try {
+            replayer.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            writeSegment.buffer.force();
+        }
+    }
+
+    private double getReplayLagSeconds() {
+        long oldest = oldestPendingMillis;
+        return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    private void replay() {
+        while (running) {
+            try {
+                if (!replayBatch()) {
+                    TimeUnit.MILLISECONDS.sleep(replayIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("failed to replay spooled hits: {}", e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(replayIntervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // true, если продвинулись и стоит сразу читать дальше
+    private boolean replayBatch() throws IOException {
+        long writeSeq;
+        int writeLimit;
+        synchronized (lock) {
+            writeSeq = writeSegment.seq;
+            writeLimit = writeSegment.buffer.position();
+        }
+        int limit = readSegment.seq == writeSeq ? writeLimit : segmentBytes;
+
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        long[] firstAppendedAt = new long[1];
+        int end = scan(readSegment.buffer, readOffset, limit, batchSize, batch, firstAppendedAt);
+
+        if (batch.isEmpty()) {
+            if (readSegment.seq == writeSeq) {
+                oldestPendingMillis = 0;
+                return false;
+            }
+            // сегмент дочитан, а писатель уже в следующем: переходим и удаляем прочитанный
+            Segment done = readSegment;
+            readSegment = Segment.open(segmentPath(done.seq + 1), done.seq + 1,
+                    segmentBytes, FileChannel.MapMode.READ_ONLY);
+            readOffset = 0;
+            saveOffset(readSegment.seq, 0);
+            Files.deleteIfExists(segmentPath(done.seq));
+            return true;
+        }
+
+        oldestPendingMillis = firstAppendedAt[0];
+        int sent = send(batch);
+        // доставка "хотя бы раз": падение между отправкой и записью смещения приведёт к повтору пачки
+        saveOffset(readSegment.seq, end);
+        pendingBytes.addAndGet(readOffset - end);
+        readOffset = end;
+        oldestPendingMillis = 0;
+        sentCounter.increment(sent);
+        return true;
+    }
+
+    // 4xx, кроме 429 и 408, не пройдёт и при повторе. пачка отклоняется целиком из-за одного хита,
+    // поэтому она досылается по одному, а отклонённые хиты отбрасываются и не останавливают спул;
+    // остальные ошибки пробрасываются, и пачка повторяется целиком
+    private int send(List<EndpointHitDto> batch) {
+        try {
+            sender.accept(batch);
+            return batch.size();
+        } catch (HttpClientErrorException e) {
+            if (!isPermanent(e)) {
+                throw e;
+            }
+            if (batch.size() == 1) {
+                reject(batch.get(0), e);
+                return 0;
+            }
+        }
+        int sent = 0;
+        for (EndpointHitDto hit : batch) {
+            try {
+                sender.accept(List.of(hit));
+                sent++;
+            } catch (HttpClientErrorException e) {
+                if (!isPermanent(e)) {
+                    throw e;
+                }
+                reject(hit, e);
+            }
+        }
+        return sent;
+    }
+
+    private void reject(EndpointHitDto hit, HttpClientErrorException e) {
+        log.warn("statistics server rejected spooled hit {} {}: {}", hit.getApp(), hit.getUri(), e.getStatusCode());
+        rejectedCounter.increment();
+    }
+
+    private static boolean isPermanent(HttpClientErrorException e) {
+        return e.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS && e.getStatusCode() != HttpStatus.REQUEST_TIMEOUT;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> seqs;
+        try (Stream<Path> files = Files.list(dir)) {
+            seqs = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        long ackSeq = 0;
+        int ackOffset = 0;
+        Path offsetPath = dir.resolve(OFFSET_FILE);
+        if (Files.exists(offsetPath)) {
+            ByteBuffer offset = ByteBuffer.wrap(Files.readAllBytes(offsetPath));
+            ackSeq = offset.getLong();
+            ackOffset = offset.getInt();
+        }
+        List<Long> live = new ArrayList<>();
+        for (Long seq : seqs) {
+            if (seq < ackSeq) {
+                Files.delete(segmentPath(seq));
+            } else {
+                live.add(seq);
+            }
+        }
+        if (live.isEmpty()) {
+            live.add(ackSeq);
+            ackOffset = 0;
+        } else if (live.get(0) > ackSeq) {
+            ackSeq = live.get(0);
+            ackOffset = 0;
+        }
+
+        for (Long seq : live) {
+            Segment segment = Segment.open(segmentPath(seq), seq, segmentBytes, FileChannel.MapMode.READ_WRITE);
+            int from = seq == ackSeq ? ackOffset : 0;
+            int end = scan(segment.buffer, from, segmentBytes, Integer.MAX_VALUE, null, null);
+            pendingBytes.addAndGet(end - from);
+            segment.buffer.position(end);
+            writeSegment = segment;
+        }
+        // недописанный хвост обнуляется, чтобы старые байты за ним не приняли за записи
+        ByteBuffer tail = writeSegment.buffer.duplicate();
+        while (tail.hasRemaining()) {
+            tail.put((byte) 0);
+        }
+        readSegment = Segment.open(segmentPath(ackSeq), ackSeq, segmentBytes, FileChannel.MapMode.READ_ONLY);
+        readOffset = ackOffset;
+    }
+
+    private static int scan(ByteBuffer buffer,
+                            int from,
+                            int limit,
+                            int maxRecords,
+                            List<EndpointHitDto> hits,
+                            long[] firstAppendedAt) {
+        int offset = from;
+        int records = 0;
+        while (records < maxRecords && offset + HEADER_BYTES <= limit) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > limit) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER_BYTES);
+            view.get(payload);
+            if (crc(payload) != buffer.getInt(offset + 4)) {
+                break;
+            }
+            if (hits != null) {
+                if (records == 0) {
+                    firstAppendedAt[0] = buffer.getLong(offset + 8);
+                }
+                hits.add(decode(payload));
+            }
+            offset += HEADER_BYTES + length;
+            records++;
+        }
+        return offset;
+    }
+
+    private void saveOffset(long seq, int offset) throws IOException {
+        Path tmp = dir.resolve(OFFSET_FILE + ".tmp");
+        Files.write(tmp, ByteBuffer.allocate(12).putLong(seq).putInt(offset).array());
+        Files.move(tmp, dir.resolve(OFFSET_FILE), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(EndpointHitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeUTF(hit.getTimestamp());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EndpointHitDto decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return EndpointHitDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(in.readUTF())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Segment {
+        private final long seq;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long seq, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.buffer = buffer;
+        }
+
+        // отображение остаётся действительным и после закрытия канала
+        private static Segment open(Path path, long seq, int size, FileChannel.MapMode mode) throws IOException {
+            StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                    ? new StandardOpenOption[]{StandardOpenOption.READ}
+                    : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE};
+            try (FileChannel channel = FileChannel.open(path, options)) {
+                return new Segment(seq, channel.map(mode, 0, size));
+            }
+        }
+    }
+}
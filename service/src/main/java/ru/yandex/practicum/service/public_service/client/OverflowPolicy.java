@@ -0,0 +1,7 @@
+package ru.yandex.practicum.service.public_service.client;
+
+public enum OverflowPolicy {
+    DROP_NEWEST,
+    DROP_OLDEST,
+    BLOCK
+}
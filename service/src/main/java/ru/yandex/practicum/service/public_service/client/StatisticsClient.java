@@ -1,5 +1,6 @@
 package ru.yandex.practicum.service.public_service.client;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
@@ -14,36 +15,123 @@ import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.yandex.practicum.service.public_service.dto.EndpointHitDto;
 import ru.yandex.practicum.service.shared.model.DateTimeFormat;
 
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
 public class StatisticsClient {
     private final RestTemplate rest;
+    private final ClientMode mode;
+    private final WireFormat wireFormat;
+    private final AsyncHitShipper shipper;
+    private final HitSpool spool;
     private static final String API_PREFIX = "/hit";
+    private static final String BATCH_API_PREFIX = "/hit/batch";
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
 
     @Autowired
-    public StatisticsClient(@Value("${stats-server.url}") String serverUrl, RestTemplateBuilder builder) {
+    public StatisticsClient(@Value("${stats-server.url}") String serverUrl,
+                            @Value("${stats-server.client.mode:SYNC}") ClientMode mode,
+                            @Value("${stats-server.client.wire-format:JSON}") WireFormat wireFormat,
+                            @Value("${stats-server.client.queue-capacity:10000}") int queueCapacity,
+                            @Value("${stats-server.client.batch-size:1000}") int batchSize,
+                            @Value("${stats-server.client.flush-interval-ms:1000}") long flushIntervalMs,
+                            @Value("${stats-server.client.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy,
+                            @Value("${stats-server.client.offer-timeout-ms:50}") long offerTimeoutMs,
+                            @Value("${stats-server.client.spool.dir:stats-spool}") String spoolDir,
+                            @Value("${stats-server.client.spool.segment-bytes:16777216}") int spoolSegmentBytes,
+                            @Value("${stats-server.client.spool.max-bytes:1073741824}") long spoolMaxBytes,
+                            @Value("${stats-server.client.spool.replay-interval-ms:1000}") long spoolReplayIntervalMs,
+                            RestTemplateBuilder builder,
+                            MeterRegistry meterRegistry) {
         this.rest = builder
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                 .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                 .build();
-    }
+        this.mode = mode;
+        this.wireFormat = wireFormat;
 
-    public void sendRequestInfo(String appName, String clientIp, String endpointPath) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        if (mode == ClientMode.ASYNC) {
+            shipper = new AsyncHitShipper(queueCapacity,
+                    batchSize,
+                    flushIntervalMs,
+                    overflowPolicy,
+                    offerTimeoutMs,
+                    this::postHits,
+                    meterRegistry);
+        } else {
+            shipper = null;
+        }
 
+        if (mode == ClientMode.SPOOL) {
+            spool = new HitSpool(Path.of(spoolDir),
+                    spoolSegmentBytes,
+                    spoolMaxBytes,
+                    batchSize,
+                    spoolReplayIntervalMs,
+                    this::postHits,
+                    meterRegistry);
+        } else {
+            spool = null;
+        }
+    }
 
-        HttpEntity<EndpointHitDto> requestEntity = new HttpEntity<>(EndpointHitDto.builder()
+    public void sendRequestInfo(String appName, String clientIp, String endpointPath) {
+        EndpointHitDto hit = EndpointHitDto.builder()
                 .app(appName)
                 .uri(endpointPath)
                 .ip(clientIp)
                 .timestamp(LocalDateTime.now().format(new DateTimeFormat().getFormatter()))
-                .build(),
-                headers);
+                .build();
+
+        switch (mode) {
+            case ASYNC:
+                shipper.offer(hit);
+                break;
+            case SPOOL:
+                spool.append(hit);
+                break;
+            default:
+                postHit(hit);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (shipper != null) {
+            shipper.close(SHUTDOWN_TIMEOUT_MS);
+        }
+        if (spool != null) {
+            spool.close(SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    private void postHits(List<EndpointHitDto> hits) {
+        if (wireFormat == WireFormat.BINARY) {
+            HttpHeaders headers = jsonHeaders();
+            headers.setContentType(MediaType.parseMediaType(HitBatchCodec.CONTENT_TYPE));
+            HttpEntity<byte[]> requestEntity = new HttpEntity<>(HitBatchCodec.encode(hits), headers);
+
+            rest.exchange(BATCH_API_PREFIX, HttpMethod.POST, requestEntity, Object.class);
+            return;
+        }
+        HttpEntity<List<EndpointHitDto>> requestEntity = new HttpEntity<>(hits, jsonHeaders());
+
+        rest.exchange(BATCH_API_PREFIX, HttpMethod.POST, requestEntity, Object.class);
+    }
+
+    private void postHit(EndpointHitDto hit) {
+        HttpEntity<EndpointHitDto> requestEntity = new HttpEntity<>(hit, jsonHeaders());
 
         rest.exchange(API_PREFIX, HttpMethod.POST, requestEntity, Object.class);
     }
+
+    private HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        return headers;
+    }
 }
@@ -0,0 +1,6 @@
+package ru.yandex.practicum.service.public_service.client;
+
+public enum WireFormat {
+    JSON,
+    BINARY
+}
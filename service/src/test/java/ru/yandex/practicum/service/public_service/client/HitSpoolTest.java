@@ -0,0 +1,179 @@
+package ru.yandex.practicum.service.public_service.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import ru.yandex.practicum.service.public_service.dto.EndpointHitDto;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitSpoolTest {
+    private static final int SEGMENT_BYTES = 4096;
+    private static final long TIMEOUT_MS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+    private final List<HitSpool> spools = new ArrayList<>();
+
+    @AfterEach
+    void closeSpools() {
+        spools.forEach(spool -> spool.close(TIMEOUT_MS));
+    }
+
+    @Test
+    void replaysHitsSpooledWhileServerWasDown() throws InterruptedException {
+        HitSpool down = open(batch -> {
+            throw new ResourceAccessException("connection refused");
+        });
+        for (int i = 0; i < 3; i++) {
+            down.append(hit("/events/" + i));
+        }
+        down.close(TIMEOUT_MS);
+
+        open(delivered::addAll);
+
+        awaitUntil(() -> delivered.size() == 3);
+        assertThat(delivered).extracting(EndpointHitDto::getUri)
+                .containsExactly("/events/0", "/events/1", "/events/2");
+    }
+
+    @Test
+    void doesNotReplayAcknowledgedHitsAfterRestart() throws InterruptedException {
+        HitSpool first = open(delivered::addAll);
+        first.append(hit("/events/1"));
+        awaitUntil(() -> delivered.size() == 1);
+        first.close(TIMEOUT_MS);
+
+        HitSpool second = open(delivered::addAll);
+        second.append(hit("/events/2"));
+
+        awaitUntil(() -> delivered.size() == 2);
+        Thread.sleep(100);
+        assertThat(delivered).extracting(EndpointHitDto::getUri)
+                .containsExactly("/events/1", "/events/2");
+    }
+
+    @Test
+    void replaysAcrossSegments() throws InterruptedException {
+        HitSpool down = open(batch -> {
+            throw new ResourceAccessException("connection refused");
+        });
+        for (int i = 0; i < 200; i++) {
+            down.append(hit("/events/" + i));
+        }
+        down.close(TIMEOUT_MS);
+
+        open(delivered::addAll);
+
+        awaitUntil(() -> delivered.size() == 200);
+        assertThat(delivered.get(199).getUri()).isEqualTo("/events/199");
+    }
+
+    @Test
+    void dropsHitsThatCannotBeEncoded() throws InterruptedException {
+        HitSpool spool = open(delivered::addAll);
+
+        spool.append(EndpointHitDto.builder().uri("/events/1").ip("10.0.0.1").timestamp("2024-01-01 00:00:00").build());
+        spool.append(hit("x".repeat(70_000)));
+        spool.append(hit("/events/2"));
+
+        awaitUntil(() -> delivered.size() == 1);
+        assertThat(delivered).extracting(EndpointHitDto::getUri).containsExactly("/events/2");
+        assertThat(dropped("invalid")).isEqualTo(2);
+    }
+
+    @Test
+    void skipsHitsRejectedByServer() throws InterruptedException {
+        HitSpool down = open(batch -> {
+            throw new ResourceAccessException("connection refused");
+        });
+        down.append(hit("/events/1"));
+        down.append(hit("/bad"));
+        down.append(hit("/events/2"));
+        down.close(TIMEOUT_MS);
+
+        open(batch -> {
+            if (batch.stream().anyMatch(hit -> hit.getUri().equals("/bad"))) {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }
+            delivered.addAll(batch);
+        });
+
+        awaitUntil(() -> delivered.size() == 2);
+        assertThat(delivered).extracting(EndpointHitDto::getUri).containsExactly("/events/1", "/events/2");
+        awaitUntil(() -> dropped("rejected") == 1);
+    }
+
+    @Test
+    void retriesThrottledBatches() throws InterruptedException {
+        List<Integer> attempts = new CopyOnWriteArrayList<>();
+        HitSpool spool = open(batch -> {
+            attempts.add(batch.size());
+            if (attempts.size() < 3) {
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+            }
+            delivered.addAll(batch);
+        });
+
+        spool.append(hit("/events/1"));
+
+        awaitUntil(() -> delivered.size() == 1);
+        assertThat(dropped("rejected")).isZero();
+    }
+
+    @Test
+    void dropsHitsOverMaxBytes() throws InterruptedException {
+        HitSpool spool = new HitSpool(dir, SEGMENT_BYTES, 100, 10, 10, batch -> {
+            throw new ResourceAccessException("connection refused");
+        }, registry);
+        spools.add(spool);
+
+        for (int i = 0; i < 10; i++) {
+            spool.append(hit("/events/" + i));
+        }
+
+        assertThat(dropped("spool_full")).isPositive();
+        assertThat(registry.get("stats.client.spool.bytes").gauge().value()).isLessThanOrEqualTo(100);
+    }
+
+    private HitSpool open(Consumer<List<EndpointHitDto>> sender) {
+        HitSpool spool = new HitSpool(dir, SEGMENT_BYTES, 1 << 20, 10, 10, sender, registry);
+        spools.add(spool);
+        return spool;
+    }
+
+    private double dropped(String reason) {
+        return registry.get("stats.client.hits.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp("2024-01-01 00:00:00")
+                .build();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
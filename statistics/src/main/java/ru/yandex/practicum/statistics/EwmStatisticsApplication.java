@@ -2,8 +2,10 @@ package ru.yandex.practicum.statistics;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EwmStatisticsApplication {
 
 	public static void main(String[] args) {
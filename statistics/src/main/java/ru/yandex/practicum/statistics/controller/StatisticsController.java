@@ -2,36 +2,162 @@ package ru.yandex.practicum.statistics.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.statistics.dto.EndpointHitDto;
+import ru.yandex.practicum.statistics.dto.HistogramPoint;
+import ru.yandex.practicum.statistics.dto.HitBatchAck;
+import ru.yandex.practicum.statistics.dto.HitBatchCodec;
+import ru.yandex.practicum.statistics.dto.StatsChanges;
+import ru.yandex.practicum.statistics.dto.StatsJob;
 import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.TimeBucket;
 import ru.yandex.practicum.statistics.service.EndpointHitService;
+import ru.yandex.practicum.statistics.service.HitChangeFeedService;
+import ru.yandex.practicum.statistics.service.HitHistogramService;
+import ru.yandex.practicum.statistics.service.IngestLimiter;
+import ru.yandex.practicum.statistics.service.LiveStatsBroadcaster;
+import ru.yandex.practicum.statistics.service.StatsJobService;
+import ru.yandex.practicum.statistics.service.StatsStreamService;
+import ru.yandex.practicum.statistics.service.TopStatsService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
 import java.util.List;
 
 @RequiredArgsConstructor
 @Slf4j
+@Validated
 @RestController
 public class StatisticsController {
     private final EndpointHitService endpointHitService;
+    private final StatsStreamService statsStreamService;
+    private final TopStatsService topStatsService;
+    private final HitHistogramService hitHistogramService;
+    private final IngestLimiter ingestLimiter;
+    private final HitChangeFeedService hitChangeFeedService;
+    private final LiveStatsBroadcaster liveStatsBroadcaster;
+    private final StatsJobService statsJobService;
+
+    private static final int MAX_BATCH_SIZE = 10000;
+    private static final int MAX_TOP_LIMIT = 1000;
 
     @PostMapping("/hit")
     public EndpointHitDto postHit(@Valid @RequestBody EndpointHitDto dto) {
         log.info("POST: /hit");
-        return endpointHitService.addHit(dto);
+        return ingestLimiter.run(1, () -> endpointHitService.addHit(dto));
+    }
+
+    @PostMapping("/hit/batch")
+    public HitBatchAck postHits(@RequestBody @Size(max = MAX_BATCH_SIZE) List<@Valid EndpointHitDto> dtos) {
+        log.info("POST: /hit/batch size={}", dtos.size());
+        return ingestLimiter.run(dtos.size(), () -> endpointHitService.addHits(dtos));
+    }
+
+    @PostMapping(value = "/hit/batch", consumes = HitBatchCodec.CONTENT_TYPE)
+    public HitBatchAck postBinaryHits(@RequestBody byte[] body) {
+        log.info("POST: /hit/batch binary bytes={}", body.length);
+        List<EndpointHit> hits;
+        try {
+            hits = HitBatchCodec.decode(body, MAX_BATCH_SIZE);
+        } catch (IllegalArgumentException e) {
+            // битая пачка - ошибка клиента: 500 заставил бы спул клиента повторять её бесконечно
+            throw new BadRequestException(e.getMessage());
+        }
+        return ingestLimiter.run(hits.size(), () -> endpointHitService.saveHits(hits));
     }
 
     @GetMapping("/stats")
     public List<ViewStats> getStatistics(@RequestParam String start,
                                          @RequestParam String end,
                                          @RequestParam(required = false) String[] uris,
-                                         @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+                                         @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                         @RequestParam(required = false) Boolean exact) {
         log.info("GET: /stats");
-        return endpointHitService.getStats(start, end, uris, unique);
+        return endpointHitService.getStats(start, end, uris, unique, exact);
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTopStatistics(@RequestParam String start,
+                                            @RequestParam String end,
+                                            @RequestParam(required = false) String[] uris,
+                                            @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                            @RequestParam(required = false) Boolean exact,
+                                            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_TOP_LIMIT) int limit) {
+        log.info("GET: /stats/top limit={}", limit);
+        return topStatsService.getTop(start, end, uris, unique, exact, limit);
+    }
+
+    @GetMapping("/stats/histogram")
+    public List<HistogramPoint> getHistogram(@RequestParam String start,
+                                             @RequestParam String end,
+                                             @RequestParam(required = false) String[] uris,
+                                             @RequestParam(defaultValue = "HOUR") TimeBucket bucket,
+                                             @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        log.info("GET: /stats/histogram bucket={}", bucket);
+        return hitHistogramService.getHistogram(start, end, uris, bucket, unique);
+    }
+
+    @GetMapping("/stats/changes")
+    public StatsChanges getChanges(@RequestParam(required = false) String cursor) {
+        log.info("GET: /stats/changes");
+        return hitChangeFeedService.getChanges(cursor);
+    }
+
+    @GetMapping(value = "/stats/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getLiveStatistics(@RequestParam(required = false) String[] uris) {
+        log.info("GET: /stats/live");
+        return liveStatsBroadcaster.subscribe(uris);
+    }
+
+    @PostMapping("/stats/jobs")
+    public ResponseEntity<StatsJob> submitStatsJob(@RequestParam String start,
+                                                   @RequestParam String end,
+                                                   @RequestParam(required = false) String[] uris,
+                                                   @RequestParam(required = false, defaultValue = "false") Boolean unique,
+                                                   @RequestParam(required = false) Boolean exact) {
+        log.info("POST: /stats/jobs");
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(statsJobService.submit(start, end, uris, unique, exact));
+    }
+
+    @GetMapping("/stats/jobs/{id}")
+    public DeferredResult<StatsJob> getStatsJob(@PathVariable String id,
+                                                @RequestParam(defaultValue = "0") @Min(0) long waitMs) {
+        log.info("GET: /stats/jobs/{} waitMs={}", id, waitMs);
+        return statsJobService.await(id, waitMs);
+    }
+
+    @DeleteMapping("/stats/jobs/{id}")
+    public StatsJob cancelStatsJob(@PathVariable String id) {
+        log.info("DELETE: /stats/jobs/{}", id);
+        return statsJobService.cancel(id);
+    }
+
+    @GetMapping(value = "/stats", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamStatistics(@RequestParam String start,
+                                                                  @RequestParam String end,
+                                                                  @RequestParam(required = false) String[] uris,
+                                                                  @RequestParam(required = false, defaultValue = "false") Boolean unique) {
+        log.info("GET: /stats?stream=true");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(statsStreamService.streamStats(start, end, uris, unique));
     }
 }
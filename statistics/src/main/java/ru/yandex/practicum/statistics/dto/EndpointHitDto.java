@@ -7,21 +7,30 @@ import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class EndpointHitDto {
+    // по длине столбцов endpoint_hits; те же ограничения проверяет HitBatchCodec для бинарного приёма
+    public static final int MAX_APP_LENGTH = 100;
+    public static final int MAX_URI_LENGTH = 2000;
+    public static final int MAX_IP_LENGTH = 40;
+
     private Long id;
 
     @NotBlank
+    @Size(max = MAX_APP_LENGTH)
     String app;
 
     @NotBlank
+    @Size(max = MAX_URI_LENGTH)
     String uri;
 
     @NotBlank
+    @Size(max = MAX_IP_LENGTH)
     String ip;
 
     @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}$")
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HistogramPoint {
+    String bucket;
+    String app;
+    String uri;
+    long hits;
+}
@@ -0,0 +1,192 @@
+package ru.yandex.practicum.statistics.dto;
+
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// application/x-ewm-hit-batch: версия, словарь повторяющихся app/uri, число хитов и сами хиты;
+// хит - ссылка на app, ссылка на uri, ip, timestamp в миллисекундах от эпохи (LocalDateTime в UTC,
+// доли секунды при разборе отбрасываются: диапазоны /stats и агрегаты считаются с точностью до секунды);
+// ссылка 0 - строка идёт следом, k - k-я строка словаря; числа и длины строк - varint.
+// Формат продублирован в ru.yandex.practicum.service.public_service.client.HitBatchCodec.
+// Версия 2 с hit_count после timestamp пишется только в журнал приёма и по HTTP не принимается
+public final class HitBatchCodec {
+    public static final String CONTENT_TYPE = "application/x-ewm-hit-batch";
+    private static final int VERSION = 1;
+    private static final int COUNTED_VERSION = 2;
+
+    private HitBatchCodec() {
+    }
+
+    // хиты собираются сразу в EndpointHit, без промежуточного dto и разбора строки даты
+    public static List<EndpointHit> decode(byte[] body, int maxHits) {
+        return decode(body, maxHits, VERSION);
+    }
+
+    public static List<EndpointHit> decodeCounted(byte[] body) {
+        return decode(body, Integer.MAX_VALUE / 2, COUNTED_VERSION);
+    }
+
+    public static byte[] encodeCounted(List<EndpointHit> hits) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            counts.merge(hit.getApp(), 1, Integer::sum);
+            counts.merge(hit.getUri(), 1, Integer::sum);
+        }
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            for (String value : List.of(hit.getApp(), hit.getUri())) {
+                if (counts.get(value) > 1 && !dictionary.containsKey(value)) {
+                    dictionary.put(value, dictionary.size() + 1);
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * hits.size() + 64);
+        out.write(COUNTED_VERSION);
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        writeVarLong(out, hits.size());
+        for (EndpointHit hit : hits) {
+            writeRef(out, dictionary, hit.getApp());
+            writeRef(out, dictionary, hit.getUri());
+            writeString(out, hit.getIp());
+            writeVarLong(out, hit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+            writeVarLong(out, hit.getCount());
+        }
+        return out.toByteArray();
+    }
+
+    private static List<EndpointHit> decode(byte[] body, int maxHits, int expectedVersion) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(body);
+            int version = in.get();
+            if (version != expectedVersion) {
+                throw new IllegalArgumentException("unsupported hit batch version " + version);
+            }
+            int dictionarySize = readLength(in, maxHits * 2);
+            List<String> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary.add(readString(in));
+            }
+
+            int count = readLength(in, maxHits);
+            List<EndpointHit> hits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String app = readRef(in, dictionary);
+                String uri = readRef(in, dictionary);
+                String ip = readString(in);
+                LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(readVarLong(in), 1000L), 0, ZoneOffset.UTC);
+                int hitCount = version == COUNTED_VERSION ? readCount(in) : 1;
+                // журнал пишется из уже проверенных хитов, проверяется только приём по HTTP
+                if (version == VERSION) {
+                    requireText(app, EndpointHitDto.MAX_APP_LENGTH, "app");
+                    requireText(uri, EndpointHitDto.MAX_URI_LENGTH, "uri");
+                    requireText(ip, EndpointHitDto.MAX_IP_LENGTH, "ip");
+                }
+                hits.add(EndpointHit.builder()
+                        .app(app)
+                        .uri(uri)
+                        .ip(ip)
+                        .timestamp(timestamp)
+                        .count(hitCount)
+                        .build());
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("trailing bytes in hit batch");
+            }
+            return hits;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated hit batch", e);
+        }
+    }
+
+    // те же ограничения, что у EndpointHitDto при приёме JSON
+    private static void requireText(String value, int maxLength, String field) {
+        if (value.isBlank()) {
+            throw new IllegalArgumentException("blank " + field + " in hit batch");
+        }
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(field + " longer than " + maxLength + " characters in hit batch");
+        }
+    }
+
+    private static int readCount(ByteBuffer in) {
+        int count = readLength(in, Integer.MAX_VALUE);
+        if (count == 0) {
+            throw new IllegalArgumentException("zero hit count in hit batch");
+        }
+        return count;
+    }
+
+    private static String readRef(ByteBuffer in, List<String> dictionary) {
+        int ref = readLength(in, dictionary.size());
+        return ref == 0 ? readString(in) : dictionary.get(ref - 1);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readLength(in, in.remaining());
+        if (length == 0) {
+            throw new IllegalArgumentException("blank string in hit batch");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(ByteBuffer in, int max) {
+        long value = readVarLong(in);
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException("invalid length " + value + " in hit batch");
+        }
+        return (int) value;
+    }
+
+    private static void writeRef(ByteArrayOutputStream out, Map<String, Integer> dictionary, String value) {
+        Integer ref = dictionary.get(value);
+        if (ref != null) {
+            writeVarLong(out, ref);
+        } else {
+            writeVarLong(out, 0);
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint in hit batch");
+    }
+}
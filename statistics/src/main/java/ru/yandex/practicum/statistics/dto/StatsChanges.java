@@ -0,0 +1,17 @@
+package ru.yandex.practicum.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatsChanges {
+    List<ViewStats> changes;
+    String cursor;
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.statistics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.statistics.model.StatsJobStatus;
+
+import java.util.List;
+
+// result заполнен только в статусе DONE, error - в FAILED
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatsJob {
+    String id;
+    StatsJobStatus status;
+    String submitted;
+    String finished;
+    List<ViewStats> result;
+    String error;
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.statistics.exceptions;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
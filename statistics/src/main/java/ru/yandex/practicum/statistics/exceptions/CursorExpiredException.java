@@ -0,0 +1,7 @@
+package ru.yandex.practicum.statistics.exceptions;
+
+public class CursorExpiredException extends RuntimeException {
+    public CursorExpiredException(String message) {
+        super(message);
+    }
+}
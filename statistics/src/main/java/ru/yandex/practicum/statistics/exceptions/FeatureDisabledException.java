@@ -0,0 +1,7 @@
+package ru.yandex.practicum.statistics.exceptions;
+
+public class FeatureDisabledException extends RuntimeException {
+    public FeatureDisabledException(String message) {
+        super(message);
+    }
+}
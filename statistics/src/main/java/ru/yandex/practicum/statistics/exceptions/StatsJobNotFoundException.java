@@ -0,0 +1,7 @@
+package ru.yandex.practicum.statistics.exceptions;
+
+public class StatsJobNotFoundException extends RuntimeException {
+    public StatsJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,17 @@
 package ru.yandex.practicum.statistics.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.statistics.dto.ApiError;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+import ru.yandex.practicum.statistics.exceptions.CursorExpiredException;
+import ru.yandex.practicum.statistics.exceptions.FeatureDisabledException;
+import ru.yandex.practicum.statistics.exceptions.StatsJobNotFoundException;
+import ru.yandex.practicum.statistics.exceptions.TooManyRequestsException;
 import ru.yandex.practicum.statistics.model.DateTimeFormat;
 
 import java.time.LocalDateTime;
@@ -15,18 +21,66 @@ import java.util.List;
 @Slf4j
 @RestControllerAdvice
 public class StatisticsExceptionHandler {
+    @ExceptionHandler(value = TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequests(TooManyRequestsException e) {
+        log.info(e.getClass().getSimpleName() + " " + e.getMessage());
+        HttpStatus httpStatus = HttpStatus.TOO_MANY_REQUESTS;
+
+        return ResponseEntity.status(httpStatus)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(toApiError(httpStatus, e.getMessage(), List.of()));
+    }
+
+    @ExceptionHandler(value = BadRequestException.class)
+    public ResponseEntity<ApiError> handleBadRequest(BadRequestException e) {
+        log.info(e.getClass().getSimpleName() + " " + e.getMessage());
+        HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
+
+        return new ResponseEntity<>(toApiError(httpStatus, e.getMessage(), List.of()), httpStatus);
+    }
+
+    // позиция курсора старше хранимой ленты: клиенту нужно начать заново
+    @ExceptionHandler(value = CursorExpiredException.class)
+    public ResponseEntity<ApiError> handleCursorExpired(CursorExpiredException e) {
+        log.info(e.getClass().getSimpleName() + " " + e.getMessage());
+        HttpStatus httpStatus = HttpStatus.GONE;
+
+        return new ResponseEntity<>(toApiError(httpStatus, e.getMessage(), List.of()), httpStatus);
+    }
+
+    @ExceptionHandler(value = StatsJobNotFoundException.class)
+    public ResponseEntity<ApiError> handleStatsJobNotFound(StatsJobNotFoundException e) {
+        log.info(e.getClass().getSimpleName() + " " + e.getMessage());
+        HttpStatus httpStatus = HttpStatus.NOT_FOUND;
+
+        return new ResponseEntity<>(toApiError(httpStatus, e.getMessage(), List.of()), httpStatus);
+    }
+
+    // эндпоинт опирается на выключенную в конфигурации функцию: повтор запроса не поможет
+    @ExceptionHandler(value = FeatureDisabledException.class)
+    public ResponseEntity<ApiError> handleFeatureDisabled(FeatureDisabledException e) {
+        log.info(e.getClass().getSimpleName() + " " + e.getMessage());
+        HttpStatus httpStatus = HttpStatus.NOT_IMPLEMENTED;
+
+        return new ResponseEntity<>(toApiError(httpStatus, e.getMessage(), List.of()), httpStatus);
+    }
+
     @ExceptionHandler(value = Exception.class)
     public ResponseEntity<ApiError> handleException(Exception e) {
         log.info(e.getClass().getSimpleName() + " " + e.getMessage());
         HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
 
-        return new ResponseEntity<>(ApiError.builder()
-                .errors(List.of(Arrays.toString(e.getStackTrace())))
-                .message(e.getMessage())
+        return new ResponseEntity<>(toApiError(httpStatus, e.getMessage(), List.of(Arrays.toString(e.getStackTrace()))),
+                httpStatus);
+    }
+
+    private static ApiError toApiError(HttpStatus httpStatus, String message, List<String> errors) {
+        return ApiError.builder()
+                .errors(errors)
+                .message(message)
                 .reason(httpStatus.getReasonPhrase())
                 .status(httpStatus.name())
                 .timestamp(LocalDateTime.now().format(new DateTimeFormat().getFormatter()))
-                .build(),
-                httpStatus);
+                .build();
     }
 }
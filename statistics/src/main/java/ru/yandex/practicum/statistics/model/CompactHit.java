@@ -0,0 +1,18 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class CompactHit {
+    short appId;
+    int uriId;
+    byte[] ip;
+    LocalDateTime timestamp;
+    int count;
+}
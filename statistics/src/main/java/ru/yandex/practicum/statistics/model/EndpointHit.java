@@ -37,4 +37,9 @@ public class EndpointHit {
 
     @Column(name = "hit_timestamp", nullable = false)
     LocalDateTime timestamp;
+
+    // число одинаковых хитов, схлопнутых в эту строку при приёме
+    @Column(name = "hit_count", nullable = false)
+    @Builder.Default
+    int count = 1;
 }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class HitRollup {
+    LocalDateTime bucket;
+    String app;
+    String uri;
+    long hits;
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum PartitionInterval {
+    DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(ChronoUnit.MONTHS, DateTimeFormatter.ofPattern("yyyyMM"));
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormatter;
+
+    public LocalDate truncate(LocalDate date) {
+        return this == MONTH ? date.withDayOfMonth(1) : date;
+    }
+
+    public LocalDate parseSuffix(String suffix) {
+        return this == MONTH
+                ? LocalDate.parse(suffix + "01", DAY.getSuffixFormatter())
+                : LocalDate.parse(suffix, suffixFormatter);
+    }
+}
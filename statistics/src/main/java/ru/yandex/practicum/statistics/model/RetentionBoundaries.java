@@ -0,0 +1,74 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+
+import java.time.LocalDateTime;
+
+// сырые хиты и минутные роллапы полны начиная с rawFrom, часовые - с hourFrom, суточные хранятся всегда
+@Getter
+@AllArgsConstructor
+public class RetentionBoundaries {
+    public static final String RAW = "raw";
+    public static final String HOUR = "hour";
+    public static final LocalDateTime UNBOUNDED = LocalDateTime.MIN;
+
+    private final LocalDateTime rawFrom;
+    private final LocalDateTime hourFrom;
+
+    // края диапазона там, где мелких данных уже нет, должны лежать на границе часа или суток:
+    // молча расширенное окно посчитало бы хиты вне запрошенного
+    public void requireAligned(LocalDateTime start, LocalDateTime end) {
+        requireEqual("start", start, alignStart(start));
+        requireEqual("end", end, alignEnd(end));
+    }
+
+    // для агрегатов одного тира, которые хранятся дольше сырых хитов
+    public void requireAligned(LocalDateTime start, LocalDateTime end, TimeBucket tier) {
+        requireEqual("start", start, alignStart(start, tier));
+        requireEqual("end", end, alignEnd(end, tier));
+    }
+
+    // с какого момента есть данные для бакетов такого размера: мельче часа - только сырые хиты и минутные роллапы
+    public LocalDateTime getAvailableFrom(TimeBucket bucket) {
+        if (bucket == TimeBucket.MINUTE) {
+            return rawFrom;
+        }
+        return bucket == TimeBucket.HOUR ? hourFrom : UNBOUNDED;
+    }
+
+    private LocalDateTime alignStart(LocalDateTime start) {
+        if (start.isBefore(hourFrom)) {
+            return TimeBucket.DAY.truncate(start);
+        }
+        return start.isBefore(rawFrom) ? TimeBucket.HOUR.truncate(start) : start;
+    }
+
+    private LocalDateTime alignEnd(LocalDateTime end) {
+        if (end.isBefore(hourFrom)) {
+            return lastSecond(TimeBucket.DAY, end);
+        }
+        return end.isBefore(rawFrom) ? lastSecond(TimeBucket.HOUR, end) : end;
+    }
+
+    private LocalDateTime alignStart(LocalDateTime start, TimeBucket tier) {
+        return start.isBefore(rawFrom) ? tier.truncate(start) : start;
+    }
+
+    private LocalDateTime alignEnd(LocalDateTime end, TimeBucket tier) {
+        return end.isBefore(rawFrom) ? lastSecond(tier, end) : end;
+    }
+
+    private static void requireEqual(String name, LocalDateTime requested, LocalDateTime aligned) {
+        if (!aligned.equals(requested)) {
+            DateTimeFormat format = new DateTimeFormat();
+            throw new BadRequestException(name + " " + requested.format(format.getFormatter())
+                    + " falls where only hourly or daily rollups are kept, use " + aligned.format(format.getFormatter()));
+        }
+    }
+
+    private static LocalDateTime lastSecond(TimeBucket bucket, LocalDateTime dateTime) {
+        return bucket.next(bucket.truncate(dateTime)).minusSeconds(1);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Getter
+@AllArgsConstructor
+public class RollupPlan {
+    private final LocalDateTime coveredFrom;
+    private final LocalDateTime coveredTo;
+    private final List<Segment> segments;
+
+    // start и end включительно, как в between, с точностью до секунды; tiers - от крупного бакета к мелкому
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end, List<TimeBucket> tiers) {
+        TimeBucket finest = tiers.get(tiers.size() - 1);
+        LocalDateTime from = finest.ceil(start);
+        LocalDateTime to = finest.truncate(end.plusSeconds(1));
+        List<Segment> segments = new ArrayList<>();
+
+        if (from.isBefore(to)) {
+            split(from, to, tiers, 0, segments);
+        } else {
+            to = from;
+        }
+        return new RollupPlan(from, to, segments);
+    }
+
+    // до daysOnlyBefore (начало суток) остались только суточные роллапы, start там должен быть выровнен по суткам
+    public static RollupPlan of(LocalDateTime start,
+                                LocalDateTime end,
+                                List<TimeBucket> tiers,
+                                LocalDateTime daysOnlyBefore) {
+        if (!start.isBefore(daysOnlyBefore)) {
+            return of(start, end, tiers);
+        }
+        if (end.isBefore(daysOnlyBefore)) {
+            return of(start, end, List.of(TimeBucket.DAY));
+        }
+        RollupPlan days = of(start, daysOnlyBefore.minusSeconds(1), List.of(TimeBucket.DAY));
+        RollupPlan rest = of(daysOnlyBefore, end, tiers);
+        List<Segment> segments = new ArrayList<>(days.segments);
+        segments.addAll(rest.segments);
+        return new RollupPlan(days.coveredFrom, rest.coveredTo, segments);
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public List<Segment> getSegments(TimeBucket bucket) {
+        return segments.stream()
+                .filter(segment -> segment.getBucket() == bucket)
+                .collect(Collectors.toList());
+    }
+
+    private static void split(LocalDateTime from,
+                              LocalDateTime to,
+                              List<TimeBucket> tiers,
+                              int level,
+                              List<Segment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        TimeBucket tier = tiers.get(level);
+        if (level == tiers.size() - 1) {
+            segments.add(new Segment(tier, from, to));
+            return;
+        }
+
+        LocalDateTime alignedFrom = tier.ceil(from);
+        LocalDateTime alignedTo = tier.truncate(to);
+        if (alignedFrom.isBefore(alignedTo)) {
+            segments.add(new Segment(tier, alignedFrom, alignedTo));
+            split(from, alignedFrom, tiers, level + 1, segments);
+            split(alignedTo, to, tiers, level + 1, segments);
+        } else {
+            split(from, to, tiers, level + 1, segments);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Segment {
+        private final TimeBucket bucket;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+    }
+}
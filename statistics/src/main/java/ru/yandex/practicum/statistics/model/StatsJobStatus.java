@@ -0,0 +1,9 @@
+package ru.yandex.practicum.statistics.model;
+
+public enum StatsJobStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED,
+    CANCELLED
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class StatsKey {
+    LocalDateTime bucket;
+    String app;
+    String uri;
+
+    public static StatsKey of(String app, String uri) {
+        return new StatsKey(null, app, uri);
+    }
+}
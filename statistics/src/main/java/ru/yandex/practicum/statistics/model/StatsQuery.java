@@ -0,0 +1,29 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// ключ кеша результатов и фоновых задач /stats/jobs: uris отсортированы и без повторов, точность unique уже вычислена
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class StatsQuery {
+    LocalDateTime start;
+    LocalDateTime end;
+    List<String> uris;
+    boolean unique;
+    boolean approximate;
+
+    public static List<String> normalizeUris(String[] uris) {
+        return uris == null ? List.of() : Arrays.stream(uris)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
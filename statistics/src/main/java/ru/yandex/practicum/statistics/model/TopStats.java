@@ -0,0 +1,40 @@
+package ru.yandex.practicum.statistics.model;
+
+import ru.yandex.practicum.statistics.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// limit самых посещаемых uri: куча из limit элементов, на вершине - худший из отобранных
+public class TopStats implements Consumer<ViewStats> {
+    public static final Comparator<ViewStats> ORDER = Comparator.comparingLong(ViewStats::getHits).reversed()
+            .thenComparing(ViewStats::getApp)
+            .thenComparing(ViewStats::getUri);
+
+    private final int limit;
+    private final PriorityQueue<ViewStats> heap;
+
+    public TopStats(int limit) {
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit, ORDER.reversed());
+    }
+
+    @Override
+    public void accept(ViewStats stats) {
+        if (heap.size() < limit) {
+            heap.add(stats);
+        } else if (ORDER.compare(stats, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(stats);
+        }
+    }
+
+    public List<ViewStats> toList() {
+        List<ViewStats> top = new ArrayList<>(heap);
+        top.sort(ORDER);
+        return top;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.statistics.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// uris из запроса, разложенные по способу поиска: точные значения, префиксы и остальные LIKE-шаблоны
+@Getter
+public class UriFilter {
+    private final Set<String> exact = new LinkedHashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<String> patterns = new ArrayList<>();
+
+    private UriFilter() {
+    }
+
+    // '*' - синоним '%', остальное - синтаксис LIKE: '%', '_' и экранирование '\'
+    public static UriFilter of(String[] uris) {
+        UriFilter filter = new UriFilter();
+        if (uris == null) {
+            return filter;
+        }
+        for (String uri : uris) {
+            String pattern = uri.replace('*', '%');
+            int wildcard = firstWildcard(pattern);
+            if (wildcard < 0) {
+                filter.exact.add(pattern);
+            } else if (wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '%') {
+                filter.prefixes.add(pattern.substring(0, wildcard));
+            } else {
+                filter.patterns.add(pattern);
+            }
+        }
+        return filter;
+    }
+
+    public boolean isEmpty() {
+        return exact.isEmpty() && prefixes.isEmpty() && patterns.isEmpty();
+    }
+
+    public boolean matches(String uri) {
+        if (isEmpty() || exact.contains(uri)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (uri.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String pattern : patterns) {
+            if (like(uri, pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // жадный разбор с возвратом к последнему '%'
+    private static boolean like(String value, String pattern) {
+        int v = 0;
+        int p = 0;
+        int starP = -1;
+        int starV = 0;
+        while (v < value.length()) {
+            if (p < pattern.length()) {
+                char c = pattern.charAt(p);
+                if (c == '%') {
+                    starP = p++;
+                    starV = v;
+                    continue;
+                }
+                if (c == '\\' && p + 1 < pattern.length()) {
+                    if (pattern.charAt(p + 1) == value.charAt(v)) {
+                        p += 2;
+                        v++;
+                        continue;
+                    }
+                } else if (c == '_' || c == value.charAt(v)) {
+                    p++;
+                    v++;
+                    continue;
+                }
+            }
+            if (starP < 0) {
+                return false;
+            }
+            p = starP + 1;
+            v = ++starV;
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '%') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
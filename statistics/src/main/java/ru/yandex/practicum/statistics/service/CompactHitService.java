@@ -0,0 +1,71 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.CompactHit;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.storage.CompactHitRepository;
+import ru.yandex.practicum.statistics.storage.HitTable;
+import ru.yandex.practicum.statistics.storage.IpCodec;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+@Component
+public class CompactHitService {
+    private final HitTable hitTable;
+    private final HitDictionary hitDictionary;
+    private final CompactHitRepository compactHitRepository;
+
+    public boolean isEnabled() {
+        return hitTable.isCompact();
+    }
+
+    public EndpointHit addHit(EndpointHit hit) {
+        hit.setId(compactHitRepository.save(encode(hit)));
+        return hit;
+    }
+
+    // словари пополняются до транзакции вставки, см. HitDictionaryRepository
+    public int addHits(List<EndpointHit> hits) {
+        return saveAll(encodeAll(hits));
+    }
+
+    // вне транзакции: пополняет словари
+    public List<CompactHit> encodeAll(List<EndpointHit> hits) {
+        return hits.stream()
+                .map(this::encode)
+                .collect(Collectors.toList());
+    }
+
+    public int saveAll(List<CompactHit> compactHits) {
+        return compactHitRepository.saveAll(compactHits);
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        return compactHitRepository.findStats(start, end, uris, unique);
+    }
+
+    public void forEachStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             boolean unique,
+                             int fetchSize,
+                             Consumer<ViewStats> consumer) {
+        compactHitRepository.forEachStats(start, end, uris, unique, fetchSize, consumer);
+    }
+
+    private CompactHit encode(EndpointHit hit) {
+        return CompactHit.builder()
+                .appId(hitDictionary.getAppId(hit.getApp()))
+                .uriId(hitDictionary.getUriId(hit.getUri()))
+                .ip(IpCodec.encode(hit.getIp()))
+                .timestamp(hit.getTimestamp())
+                .count(hit.getCount())
+                .build();
+    }
+}
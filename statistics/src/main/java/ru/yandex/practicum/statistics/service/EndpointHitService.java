@@ -2,81 +2,283 @@ package ru.yandex.practicum.statistics.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.statistics.dto.EndpointHitDto;
 import ru.yandex.practicum.statistics.dto.EndpointHitDtoMapper;
+import ru.yandex.practicum.statistics.dto.HitBatchAck;
 import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.CompactHit;
 import ru.yandex.practicum.statistics.model.DateTimeFormat;
 import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.StatsQuery;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.storage.EndpointHitBatchRepository;
 import ru.yandex.practicum.statistics.storage.EndpointHitRepository;
+import ru.yandex.practicum.statistics.storage.HitCommitLog;
+import ru.yandex.practicum.statistics.storage.HitWriteFence;
+import ru.yandex.practicum.statistics.storage.IpCodec;
 
-import javax.persistence.EntityManager;
-import javax.persistence.Tuple;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Path;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Getter
 @Component
 public class EndpointHitService {
     private final EndpointHitRepository endpointHitRepository;
-    private final EntityManager entityManager;
+    private final EndpointHitBatchRepository endpointHitBatchRepository;
+    private final HitRollupService hitRollupService;
+    private final HitSketchService hitSketchService;
+    private final HitBitmapService hitBitmapService;
+    private final CompactHitService compactHitService;
+    private final HitCoalescer hitCoalescer;
+    private final HitCommitLog hitCommitLog;
+    private final HotHitStore hotHitStore;
+    private final List<HitIngestListener> hitIngestListeners;
+    private final StatsParallelExecutor statsParallelExecutor;
+    private final HitSampler hitSampler;
+    private final StatsResultCache statsResultCache;
+    private final StatsQueryEngineSelector statsQueryEngineSelector;
+    private final TransactionTemplate transactionTemplate;
+    private final HitWriteFence hitWriteFence;
 
     public EndpointHitDto addHit(EndpointHitDto dto) {
-        return EndpointHitDtoMapper
-                .toEndpointHitDto(endpointHitRepository
-                        .save(EndpointHitDtoMapper.toEndpointHit(dto)));
+        if (hitCoalescer.isBuffering() || hitCommitLog.isEnabled()) {
+            saveHits(List.of(EndpointHitDtoMapper.toEndpointHit(dto)));
+            return dto;
+        }
+        List<EndpointHit> sampled = hitSampler.sample(normalizeIps(List.of(EndpointHitDtoMapper.toEndpointHit(dto))));
+        if (sampled.isEmpty()) {
+            return dto;
+        }
+        EndpointHit hit = hitWriteFence.write(() -> compactHitService.isEnabled()
+                ? compactHitService.addHit(sampled.get(0))
+                : endpointHitRepository.save(sampled.get(0)));
+        notifyListeners(List.of(hit));
+        return EndpointHitDtoMapper.toEndpointHitDto(hit);
     }
 
-    public List<ViewStats> getStats(String start, String end, String[] uris, boolean unique) {
-        LocalDateTime startDate = LocalDateTime.parse(start, new DateTimeFormat().getFormatter());
-        LocalDateTime endDate = LocalDateTime.parse(end, new DateTimeFormat().getFormatter());
+    public HitBatchAck addHits(List<EndpointHitDto> dtos) {
+        List<EndpointHit> hits = dtos.stream()
+                .map(EndpointHitDtoMapper::toEndpointHit)
+                .collect(Collectors.toList());
 
-        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Tuple> query = builder.createTupleQuery();
-        Root<EndpointHit> root = query.from(EndpointHit.class);
-        List<Predicate> predicates = new ArrayList<>();
+        return saveHits(hits);
+    }
 
-        Path<LocalDateTime> dateTimePath = root.get("timestamp");
-        predicates.add(builder.between(dateTimePath, startDate, endDate));
+    // повторы внутри пачки схлопываются всегда, в режиме буферизации - ещё и между запросами в пределах окна;
+    // с журналом приёма хиты подтверждаются после fsync в журнал, в БД их переносит HitLogIndexer;
+    // accepted считает и хиты, отброшенные выборкой
+    public HitBatchAck saveHits(List<EndpointHit> hits) {
+        List<EndpointHit> rows = HitCoalescer.coalesce(hitSampler.sample(normalizeIps(hits)));
+        if (hitCommitLog.isEnabled()) {
+            hitCommitLog.append(rows);
+        } else if (!hitCoalescer.isBuffering()) {
+            writeRows(rows);
+        } else if (hitCoalescer.add(rows)) {
+            flushCoalesced();
+        }
+        return HitBatchAck.builder()
+                .accepted(hits.size())
+                .build();
+    }
 
-        if (uris != null) { // ((A v B) v C) = A v B v C
-            Predicate previousUriPredicate = builder.like(root.get("uri"), uris[0]);
-            Predicate finalUriPredicate = null;
+    // хиты, ещё лежащие в буфере, теряются при падении процесса
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${statistics.ingest.coalesce.window-ms:1000}")
+    public void flushCoalesced() {
+        if (hitCoalescer.isBuffering()) {
+            writeRows(hitCoalescer.drain());
+        }
+    }
 
-            for (String uri : uris) {
-                Predicate currentUriPredicate = builder.like(root.get("uri"), uri);
-                finalUriPredicate = builder.or(previousUriPredicate, currentUriPredicate);
-                previousUriPredicate = finalUriPredicate;
-            }
-            predicates.add(finalUriPredicate);
+    // пачка из журнала и позиция, до которой журнал проиндексирован, коммитятся вместе:
+    // после падения журнал дочитывается ровно с первой незаписанной пачки
+    public void indexRows(List<EndpointHit> rows, long nextOffset) {
+        List<CompactHit> compactHits = compactHitService.isEnabled() ? compactHitService.encodeAll(rows) : null;
+        hitWriteFence.write(() -> transactionTemplate.execute(status -> {
+            int inserted = compactHits != null
+                    ? compactHitService.saveAll(compactHits)
+                    : endpointHitBatchRepository.saveAll(rows);
+            hitCommitLog.saveIndexedOffset(nextOffset);
+            return inserted;
+        }));
+        hitCommitLog.release(nextOffset);
+        notifyListeners(rows);
+    }
+
+    private void writeRows(List<EndpointHit> rows) {
+        hitWriteFence.write(() -> compactHitService.isEnabled()
+                ? compactHitService.addHits(rows)
+                : endpointHitBatchRepository.saveAll(rows));
+        notifyListeners(rows);
+    }
+
+    // иначе один адрес в разной записи считался бы разными посетителями, а сырой и компактный режимы расходились бы
+    private static List<EndpointHit> normalizeIps(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            hit.setIp(IpCodec.normalize(hit.getIp()));
         }
+        return hits;
+    }
 
+    private void notifyListeners(List<EndpointHit> rows) {
+        for (HitIngestListener listener : hitIngestListeners) {
+            listener.onHits(rows);
+        }
+    }
+
+    public List<ViewStats> getStats(String start, String end, String[] uris, boolean unique, Boolean exact) {
+        return getStats(toQuery(start, end, uris, unique, exact));
+    }
+
+    // разбор параметров отдельно от расчёта: фоновые задачи проверяют запрос при постановке
+    public StatsQuery toQuery(String start, String end, String[] uris, boolean unique, Boolean exact) {
+        return new StatsQuery(LocalDateTime.parse(start, new DateTimeFormat().getFormatter()),
+                LocalDateTime.parse(end, new DateTimeFormat().getFormatter()),
+                StatsQuery.normalizeUris(uris),
+                unique,
+                unique && (exact == null ? hitSketchService.isApproximateByDefault() : !exact));
+    }
+
+    public List<ViewStats> getStats(StatsQuery query) {
+        LocalDateTime startDate = query.getStart();
+        LocalDateTime endDate = query.getEnd();
+        String[] uris = query.getUris().isEmpty() ? null : query.getUris().toArray(new String[0]);
+        boolean unique = query.isUnique();
+        boolean approximate = query.isApproximate();
+
+        if (!statsResultCache.isEnabled()) {
+            return computeStats(startDate, endDate, uris, unique, approximate);
+        }
+
+        LocalDateTime closedBefore = statsResultCache.getClosedBefore();
+        // уникальных из частей не сложить: закрытое окно кешируется целиком, с открытым - считается целиком
         if (unique) {
-            query.multiselect(root.get("app"), root.get("uri"), builder.countDistinct(root.get("ip")));
-        } else {
-            query.multiselect(root.get("app"), root.get("uri"), builder.count(root.get("ip")));
+            return endDate.isBefore(closedBefore)
+                    ? cachedStats(startDate, endDate, uris, true, approximate)
+                    : computeStats(startDate, endDate, uris, true, approximate);
+        }
+
+        // суммы кешируются по суткам: ключ суток не сдвигается вместе с границей закрытых окон и подходит
+        // соседним запросам; незакрытые сутки считаются вместе с открытым хвостом.
+        // границы включительные, точность - секунда
+        LocalDateTime cachedTo = endDate.isBefore(closedBefore)
+                ? endDate.plusSeconds(1)
+                : TimeBucket.DAY.truncate(closedBefore);
+        if (!startDate.isBefore(cachedTo)) {
+            return computeStats(startDate, endDate, uris, false, false);
         }
+        List<ViewStats> closed = statsParallelExecutor.mapReduce(startDate, cachedTo.minusSeconds(1), TimeBucket.DAY,
+                (from, to) -> cachedDays(from, to, uris),
+                EndpointHitService::sum);
+        return cachedTo.isAfter(endDate) ? closed : sum(closed, computeStats(cachedTo, endDate, uris, false, false));
+    }
+
+    // неполные сутки на краях запроса кешируются под своими границами, они тоже не меняются со временем
+    private List<ViewStats> cachedDays(LocalDateTime start, LocalDateTime end, String[] uris) {
+        List<ViewStats> stats = List.of();
+        LocalDateTime from = start;
+        while (!from.isAfter(end)) {
+            LocalDateTime nextDay = TimeBucket.DAY.next(TimeBucket.DAY.truncate(from));
+            LocalDateTime to = nextDay.isAfter(end) ? end : nextDay.minusSeconds(1);
+            stats = sum(stats, cachedStats(from, to, uris, false, false));
+            from = nextDay;
+        }
+        return stats;
+    }
 
-        query.where(predicates.toArray(new Predicate[]{}));
-        query.groupBy(root.get("app"), root.get("uri"));
+    private List<ViewStats> cachedStats(LocalDateTime start,
+                                        LocalDateTime end,
+                                        String[] uris,
+                                        boolean unique,
+                                        boolean approximate) {
+        StatsQuery query = new StatsQuery(start, end, StatsQuery.normalizeUris(uris), unique, approximate);
 
-        List<ViewStats> statisticsDtos = new ArrayList<>();
-        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
-        for (Tuple tuple : tuples) {
-            statisticsDtos.add(ViewStats.builder()
-                    .app(tuple.get(0, String.class))
-                    .uri(tuple.get(1, String.class))
-                    .hits(tuple.get(2, Long.class))
-                    .build());
+        return statsResultCache.get(query, () -> computeStats(start, end, uris, unique, approximate));
+    }
+
+    // последние часы считаются в памяти, более старая часть окна - по БД
+    private List<ViewStats> computeStats(LocalDateTime startDate,
+                                         LocalDateTime endDate,
+                                         String[] uris,
+                                         boolean unique,
+                                         boolean approximate) {
+        List<ViewStats> hot = hotHitStore.findStats(startDate, endDate, uris, unique);
+        if (hot != null) {
+            return hot;
+        }
+        // уникальных из двух частей не сложить
+        LocalDateTime hotFrom = hotHitStore.getFrom();
+        if (unique || hotFrom == null || endDate.isBefore(hotFrom)) {
+            return queryStats(startDate, endDate, uris, unique, approximate);
         }
+        hot = hotHitStore.findStats(hotFrom, endDate, uris, false);
+        if (hot == null) {
+            return queryStats(startDate, endDate, uris, false, false);
+        }
+        return sum(queryStats(startDate, hotFrom.minusSeconds(1), uris, false, false), hot);
+    }
+
+    // суммы по отрезкам складываются, уникальные сливаются внутри сервисов скетчей и битмап
+    private List<ViewStats> queryStats(LocalDateTime startDate,
+                                       LocalDateTime endDate,
+                                       String[] uris,
+                                       boolean unique,
+                                       boolean approximate) {
+        if (!unique) {
+            return statsParallelExecutor.mapReduce(startDate, endDate, TimeBucket.DAY,
+                    (from, to) -> querySegment(from, to, uris, false, false),
+                    EndpointHitService::sum);
+        }
+        return querySegment(startDate, endDate, uris, true, approximate);
+    }
 
-        return statisticsDtos;
+    private List<ViewStats> querySegment(LocalDateTime startDate,
+                                         LocalDateTime endDate,
+                                         String[] uris,
+                                         boolean unique,
+                                         boolean approximate) {
+        if (!unique && hitRollupService.isEnabled()) {
+            return hitRollupService.getStats(startDate, endDate, uris);
+        }
+
+        if (unique) {
+            if (approximate && hitSketchService.isEnabled()) {
+                return hitSketchService.getStats(startDate, endDate, uris);
+            }
+            if (hitBitmapService.isEnabled()) {
+                return hitBitmapService.getStats(startDate, endDate, uris);
+            }
+        }
+
+        if (compactHitService.isEnabled()) {
+            return compactHitService.getStats(startDate, endDate, uris, unique);
+        }
+
+        return statsQueryEngineSelector.findStats(startDate, endDate, uris, unique);
+    }
+
+    private static List<ViewStats> sum(List<ViewStats> first, List<ViewStats> second) {
+        Map<StatsKey, Long> hits = new LinkedHashMap<>();
+        for (List<ViewStats> part : List.of(first, second)) {
+            for (ViewStats stats : part) {
+                hits.merge(StatsKey.of(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+            }
+        }
+        return hits.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(entry.getKey().getApp())
+                        .uri(entry.getKey().getUri())
+                        .hits(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
     }
 }
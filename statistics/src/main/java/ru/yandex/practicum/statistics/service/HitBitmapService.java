@@ -0,0 +1,148 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.RollupPlan;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.sketch.RoaringBitmap;
+import ru.yandex.practicum.statistics.storage.HitBitmapRepository;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.RawHitRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class HitBitmapService implements HitRollupTask {
+    private final HitBitmapRepository hitBitmapRepository;
+    private final RawHitRepository rawHitRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final StatsParallelExecutor statsParallelExecutor;
+    private final VisitorDictionary visitorDictionary;
+    @Getter
+    private final boolean enabled;
+
+    public static final String BITMAPS_WATERMARK = "bitmaps";
+    private static final List<TimeBucket> TIERS = List.of(TimeBucket.DAY);
+
+    @Autowired
+    public HitBitmapService(HitBitmapRepository hitBitmapRepository,
+                            RawHitRepository rawHitRepository,
+                            HitRetentionRepository hitRetentionRepository,
+                            StatsParallelExecutor statsParallelExecutor,
+                            VisitorDictionary visitorDictionary,
+                            @Value("${statistics.bitmap.enabled:true}") boolean enabled) {
+        this.hitBitmapRepository = hitBitmapRepository;
+        this.rawHitRepository = rawHitRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.statsParallelExecutor = statsParallelExecutor;
+        this.visitorDictionary = visitorDictionary;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String getWatermarkName() {
+        return BITMAPS_WATERMARK;
+    }
+
+    @Override
+    public void rollRange(long fromHitId, long toHitId) {
+        Map<StatsKey, Set<String>> ips = new HashMap<>();
+        rawHitRepository.forEachBucketIp(TimeBucket.DAY, fromHitId, toHitId,
+                (key, ip) -> ips.computeIfAbsent(key, k -> new HashSet<>()).add(ip));
+        if (ips.isEmpty()) {
+            return;
+        }
+
+        Set<String> allIps = new HashSet<>();
+        ips.values().forEach(allIps::addAll);
+        Map<String, Integer> ids = visitorDictionary.getOrCreateIds(allIps);
+
+        Map<StatsKey, RoaringBitmap> bitmaps = new HashMap<>();
+        ips.forEach((key, keyIps) -> {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            keyIps.forEach(ip -> bitmap.add(ids.get(ip)));
+            bitmaps.put(key, bitmap);
+        });
+
+        Map<StatsKey, RoaringBitmap> stored = hitBitmapRepository.findByKeys(bitmaps.keySet());
+        bitmaps.forEach((key, bitmap) -> {
+            RoaringBitmap storedBitmap = stored.get(key);
+            if (storedBitmap != null) {
+                bitmap.or(storedBitmap);
+            }
+        });
+        hitBitmapRepository.saveAll(bitmaps, stored.keySet());
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris) {
+        // агрегаты хранятся дольше сырых хитов: там, где сырых уже нет, края должны лежать на границах тира
+        hitRetentionRepository.findBoundaries().requireAligned(start, end, TimeBucket.DAY);
+        Segment segment = statsParallelExecutor.mapReduce(start, end, TimeBucket.DAY,
+                (from, to) -> collectSegment(from, to, uris),
+                Segment::merge);
+        Map<StatsKey, Set<String>> rawIps = segment.rawIps;
+        Map<StatsKey, RoaringBitmap> merged = segment.bitmaps;
+
+        // словарь читаем последним, после всех отрезков: у любого ip из прочитанных битмапов id уже закоммичен,
+        // а ip без id точно не встречается ни в одной битмапе
+        Set<String> allIps = new HashSet<>();
+        rawIps.values().forEach(allIps::addAll);
+        Map<String, Integer> ids = visitorDictionary.findIds(allIps);
+
+        Set<StatsKey> keys = new HashSet<>(merged.keySet());
+        keys.addAll(rawIps.keySet());
+        List<ViewStats> stats = new ArrayList<>();
+        for (StatsKey key : keys) {
+            RoaringBitmap bitmap = merged.computeIfAbsent(key, k -> new RoaringBitmap());
+            long unknown = 0;
+            for (String ip : rawIps.getOrDefault(key, Set.of())) {
+                Integer id = ids.get(ip);
+                if (id != null) {
+                    bitmap.add(id);
+                } else {
+                    unknown++;
+                }
+            }
+            stats.add(ViewStats.builder()
+                    .app(key.getApp())
+                    .uri(key.getUri())
+                    .hits(bitmap.getCardinality() + unknown)
+                    .build());
+        }
+        return stats;
+    }
+
+    private Segment collectSegment(LocalDateTime start, LocalDateTime end, String[] uris) {
+        RollupPlan plan = RollupPlan.of(start, end, TIERS);
+        Segment segment = new Segment();
+        rawHitRepository.forEachRawIp(start, end, uris, plan.getCoveredFrom(), plan.getCoveredTo(), BITMAPS_WATERMARK,
+                (key, ip) -> segment.rawIps.computeIfAbsent(key, k -> new HashSet<>()).add(ip));
+        if (!plan.isEmpty()) {
+            hitBitmapRepository.forEachBitmap(plan.getCoveredFrom(), plan.getCoveredTo(), uris,
+                    (key, bitmap) -> segment.bitmaps.merge(key, bitmap, RoaringBitmap::or));
+        }
+        return segment;
+    }
+
+    // сырые ip и битмапы одного отрезка диапазона
+    private static class Segment {
+        private final Map<StatsKey, Set<String>> rawIps = new HashMap<>();
+        private final Map<StatsKey, RoaringBitmap> bitmaps = new HashMap<>();
+
+        Segment merge(Segment other) {
+            other.rawIps.forEach((key, ips) -> rawIps.computeIfAbsent(key, k -> new HashSet<>()).addAll(ips));
+            other.bitmaps.forEach((key, bitmap) -> bitmaps.merge(key, bitmap, RoaringBitmap::or));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.dto.StatsChanges;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+import ru.yandex.practicum.statistics.exceptions.CursorExpiredException;
+import ru.yandex.practicum.statistics.exceptions.FeatureDisabledException;
+import ru.yandex.practicum.statistics.storage.HitChangeRepository;
+import ru.yandex.practicum.statistics.storage.HitRollupRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+// курсор - позиция роллера счётчиков; приращения хранятся retention-hours часов,
+// более старый курсор получает 410 и должен заново прочитать /stats
+@Slf4j
+@Component
+public class HitChangeFeedService {
+    private static final String CURSOR_PREFIX = "c1:";
+    private static final String PRUNED_WATERMARK = "changes_pruned";
+
+    private final HitChangeRepository hitChangeRepository;
+    private final HitRollupRepository hitRollupRepository;
+    private final HitRollupService hitRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionHours;
+
+    @Autowired
+    public HitChangeFeedService(HitChangeRepository hitChangeRepository,
+                                HitRollupRepository hitRollupRepository,
+                                HitRollupService hitRollupService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${statistics.changes.retention-hours:24}") int retentionHours) {
+        this.hitChangeRepository = hitChangeRepository;
+        this.hitRollupRepository = hitRollupRepository;
+        this.hitRollupService = hitRollupService;
+        this.transactionTemplate = transactionTemplate;
+        this.retentionHours = retentionHours;
+    }
+
+    // без курсора лента начинается с текущей позиции и пустого списка изменений
+    public StatsChanges getChanges(String cursor) {
+        if (!hitRollupService.isEnabled()) {
+            throw new FeatureDisabledException("change feed requires statistics.rollup.enabled");
+        }
+        long position = hitChangeRepository.findMaxPosition();
+        if (cursor == null) {
+            return StatsChanges.builder()
+                    .changes(List.of())
+                    .cursor(encode(Math.max(position, hitRollupRepository.findWatermark(PRUNED_WATERMARK))))
+                    .build();
+        }
+
+        long after = decode(cursor);
+        if (after < hitRollupRepository.findWatermark(PRUNED_WATERMARK)) {
+            throw new CursorExpiredException("cursor is older than " + retentionHours + " hours of kept changes");
+        }
+        if (position <= after) {
+            return StatsChanges.builder()
+                    .changes(List.of())
+                    .cursor(cursor)
+                    .build();
+        }
+        return StatsChanges.builder()
+                .changes(hitChangeRepository.findChanges(after, position))
+                .cursor(encode(position))
+                .build();
+    }
+
+    @Scheduled(cron = "${statistics.changes.cron:0 30 * * * *}")
+    public void prune() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        transactionTemplate.executeWithoutResult(status -> {
+            long pruned = hitChangeRepository.deleteCreatedBefore(cutoff);
+            if (pruned > 0) {
+                hitRollupRepository.saveWatermark(PRUNED_WATERMARK, pruned);
+                log.info("pruned count changes up to position {}", pruned);
+            }
+        });
+    }
+
+    private static String encode(long position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(CURSOR_PREFIX)) {
+                return Long.parseLong(value.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) { // NumberFormatException тоже IllegalArgumentException
+            throw new BadRequestException("malformed cursor " + cursor);
+        }
+        throw new BadRequestException("malformed cursor " + cursor);
+    }
+}
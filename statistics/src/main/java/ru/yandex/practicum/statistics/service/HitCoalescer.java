@@ -0,0 +1,80 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// одинаковые (app, uri, ip) в пределах одной секунды пишутся одной строкой с суммарным hit_count
+@Component
+public class HitCoalescer {
+    @Getter
+    private final boolean buffering;
+    private final int maxPending;
+    private Map<HitKey, EndpointHit> pending = new LinkedHashMap<>();
+
+    @Autowired
+    public HitCoalescer(@Value("${statistics.ingest.coalesce.enabled:false}") boolean buffering,
+                        @Value("${statistics.ingest.coalesce.max-pending:100000}") int maxPending) {
+        this.buffering = buffering;
+        this.maxPending = maxPending;
+    }
+
+    // схлопывает повторы внутри одной пачки, порядок первых вхождений сохраняется
+    public static List<EndpointHit> coalesce(List<EndpointHit> hits) {
+        Map<HitKey, EndpointHit> rows = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            merge(rows, hit);
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    // возвращает true, когда буфер переполнен и его пора сбросить, не дожидаясь планировщика
+    public synchronized boolean add(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            merge(pending, hit);
+        }
+        return pending.size() >= maxPending;
+    }
+
+    public synchronized List<EndpointHit> drain() {
+        List<EndpointHit> rows = new ArrayList<>(pending.values());
+        pending = new LinkedHashMap<>();
+        return rows;
+    }
+
+    private static void merge(Map<HitKey, EndpointHit> rows, EndpointHit hit) {
+        LocalDateTime second = hit.getTimestamp().truncatedTo(ChronoUnit.SECONDS);
+        rows.merge(new HitKey(hit.getApp(), hit.getUri(), hit.getIp(), second),
+                EndpointHit.builder()
+                        .app(hit.getApp())
+                        .uri(hit.getUri())
+                        .ip(hit.getIp())
+                        .timestamp(second)
+                        .count(hit.getCount())
+                        .build(),
+                (row, next) -> {
+                    row.setCount(row.getCount() + next.getCount());
+                    return row;
+                });
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class HitKey {
+        private final String app;
+        private final String uri;
+        private final String ip;
+        private final LocalDateTime second;
+    }
+}
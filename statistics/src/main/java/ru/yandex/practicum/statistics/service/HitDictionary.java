@@ -0,0 +1,54 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.storage.HitDictionaryRepository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class HitDictionary {
+    private final HitDictionaryRepository hitDictionaryRepository;
+    private final Map<String, Short> apps;
+    private final Map<String, Integer> uris;
+
+    @Autowired
+    public HitDictionary(HitDictionaryRepository hitDictionaryRepository,
+                         @Value("${statistics.storage.dictionary-cache-size:100000}") int cacheSize) {
+        this.hitDictionaryRepository = hitDictionaryRepository;
+        this.apps = lruCache(cacheSize);
+        this.uris = lruCache(cacheSize);
+    }
+
+    // id в словарях не меняются, поэтому кеш не нужно инвалидировать
+    public short getAppId(String app) {
+        Short id = apps.get(app);
+        if (id == null) {
+            id = hitDictionaryRepository.getOrCreateAppId(app);
+            apps.put(app, id);
+        }
+        return id;
+    }
+
+    public int getUriId(String uri) {
+        Integer id = uris.get(uri);
+        if (id == null) {
+            id = hitDictionaryRepository.getOrCreateUriId(uri);
+            uris.put(uri, id);
+        }
+        return id;
+    }
+
+    // вытесняется давно не встречавшийся ключ, а не перестают кешироваться новые
+    private static <V> Map<String, V> lruCache(int cacheSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.HistogramPoint;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+import ru.yandex.practicum.statistics.model.DateTimeFormat;
+import ru.yandex.practicum.statistics.model.HitRollup;
+import ru.yandex.practicum.statistics.model.RetentionBoundaries;
+import ru.yandex.practicum.statistics.model.RollupPlan;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.HitRollupRepository;
+import ru.yandex.practicum.statistics.storage.RawHitRepository;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+public class HitHistogramService {
+    private final HitRollupService hitRollupService;
+    private final HitRollupRepository hitRollupRepository;
+    private final RawHitRepository rawHitRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final long maxBuckets;
+
+    @Autowired
+    public HitHistogramService(HitRollupService hitRollupService,
+                               HitRollupRepository hitRollupRepository,
+                               RawHitRepository rawHitRepository,
+                               HitRetentionRepository hitRetentionRepository,
+                               @Value("${statistics.histogram.max-buckets:10000}") long maxBuckets) {
+        this.hitRollupService = hitRollupService;
+        this.hitRollupRepository = hitRollupRepository;
+        this.rawHitRepository = rawHitRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.maxBuckets = maxBuckets;
+    }
+
+    // вся группировка по бакетам делается одним запросом в БД
+    public List<HistogramPoint> getHistogram(String start, String end, String[] uris, TimeBucket bucket, boolean unique) {
+        DateTimeFormatter formatter = new DateTimeFormat().getFormatter();
+        LocalDateTime startDate = LocalDateTime.parse(start, formatter);
+        LocalDateTime endDate = LocalDateTime.parse(end, formatter);
+        if (bucket.getUnit().between(bucket.truncate(startDate), endDate) >= maxBuckets) {
+            throw new BadRequestException("too many " + bucket + " buckets between " + start + " and " + end);
+        }
+
+        // бакет мельче сохранившегося тира молча показал бы нули там, где хиты были
+        RetentionBoundaries boundaries = hitRetentionRepository.findBoundaries();
+        LocalDateTime availableFrom = unique ? boundaries.getRawFrom() : boundaries.getAvailableFrom(bucket);
+        if (startDate.isBefore(availableFrom)) {
+            throw new BadRequestException((unique ? "unique " : "") + bucket + " buckets are available from "
+                    + availableFrom.format(formatter) + ", use a coarser bucket or a later start");
+        }
+
+        List<HitRollup> points;
+        if (unique) {
+            points = rawHitRepository.findUniqueHistogram(bucket, startDate, endDate, uris);
+        } else {
+            RollupPlan plan;
+            if (!hitRollupService.isEnabled()) {
+                plan = new RollupPlan(startDate, startDate, List.of());
+            } else {
+                // там, где сырых хитов уже нет, края должны лежать на границах сохранившегося тира
+                boundaries.requireAligned(startDate, endDate);
+                // суточные роллапы есть только старше hourFrom, остальные сутки собираются из часовых
+                plan = bucket == TimeBucket.DAY
+                        ? RollupPlan.of(startDate, endDate, List.of(TimeBucket.HOUR), boundaries.getHourFrom())
+                        : RollupPlan.of(startDate, endDate, List.of(bucket));
+            }
+            points = hitRollupRepository.findHistogram(bucket, plan, startDate, endDate, uris,
+                    HitRollupService.COUNTS_WATERMARK);
+        }
+
+        return points.stream()
+                .map(point -> HistogramPoint.builder()
+                        .bucket(point.getBucket().format(formatter))
+                        .app(point.getApp())
+                        .uri(point.getUri())
+                        .hits(point.getHits())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.statistics.service;
+
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.util.List;
+
+// получает строки хитов после записи в БД, hit_count уже учитывает схлопывание и выборку
+public interface HitIngestListener {
+    void onHits(List<EndpointHit> hits);
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.storage.HitCommitLog;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// переносит хиты из журнала приёма в БД пачками до batch-size хитов, схлопывая повторы между запросами;
+// роллеры дальше работают по endpoint_hits как обычно
+@Slf4j
+@Component
+public class HitLogIndexer {
+    private final HitCommitLog hitCommitLog;
+    private final EndpointHitService endpointHitService;
+    private final int batchSize;
+    private final long intervalMs;
+    // отдельный поток: индексатор не должен ждать роллеров на общем планировщике
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hit-log-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public HitLogIndexer(HitCommitLog hitCommitLog,
+                         EndpointHitService endpointHitService,
+                         @Value("${statistics.ingest.commit-log.index-batch-size:50000}") int batchSize,
+                         @Value("${statistics.ingest.commit-log.index-interval-ms:200}") long intervalMs) {
+        this.hitCommitLog = hitCommitLog;
+        this.endpointHitService = endpointHitService;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (hitCommitLog.isEnabled()) {
+            executor.scheduleWithFixedDelay(this::drain, 0, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // недоиндексированное останется в журнале и будет дочитано после перезапуска
+    @PreDestroy
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(intervalMs * 10, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        try {
+            while (!executor.isShutdown() && indexBatch()) {
+                // журнал отстаёт - пачки идут подряд, без паузы
+            }
+        } catch (RuntimeException e) { // исключение остановило бы scheduleWithFixedDelay навсегда
+            log.warn("hit commit log indexing failed", e);
+        }
+    }
+
+    private boolean indexBatch() {
+        long offset = hitCommitLog.getIndexedOffset();
+        HitCommitLog.Batch batch = hitCommitLog.read(offset, batchSize);
+        if (batch.getNextOffset() == offset) {
+            return false;
+        }
+        endpointHitService.indexRows(HitCoalescer.coalesce(batch.getHits()), batch.getNextOffset());
+        return true;
+    }
+}
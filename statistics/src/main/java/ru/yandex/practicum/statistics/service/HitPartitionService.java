@@ -0,0 +1,103 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.model.PartitionInterval;
+import ru.yandex.practicum.statistics.storage.HitPartitionRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+@Slf4j
+@Component
+public class HitPartitionService {
+    private final HitPartitionRepository hitPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final PartitionInterval interval;
+    private final int precreate;
+
+    @Autowired
+    public HitPartitionService(HitPartitionRepository hitPartitionRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${statistics.partitioning.enabled:false}") boolean enabled,
+                               @Value("${statistics.partitioning.interval:DAY}") PartitionInterval interval,
+                               @Value("${statistics.partitioning.precreate:7}") int precreate) {
+        this.hitPartitionRepository = hitPartitionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.precreate = precreate;
+    }
+
+    // до старта веб-сервера, пока хиты не пишутся; DDL в PostgreSQL транзакционный, сбой оставит старую таблицу
+    @PostConstruct
+    public void migrate() {
+        if (!enabled || hitPartitionRepository.isPartitioned()) {
+            return;
+        }
+        LocalDate current = interval.truncate(LocalDate.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            hitPartitionRepository.createPartitionedTable();
+            for (int i = 0; i <= precreate; i++) {
+                createPartition(current.plus(i, interval.getUnit()));
+            }
+            hitPartitionRepository.attachLegacy(current);
+        });
+        log.info("endpoint_hits migrated to partitions, older hits kept in {}", HitPartitionRepository.LEGACY_PARTITION);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${statistics.partitioning.cron:0 5 * * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        createUpcoming(interval.truncate(LocalDate.now()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // секция удаляется, только если целиком раньше cutoff и все её хиты уже свёрнуты
+    public void dropExpired(LocalDate cutoff, long maxHitId) {
+        for (String name : hitPartitionRepository.findPartitions()) {
+            LocalDate from;
+            try {
+                from = interval.parseSuffix(name.substring(HitPartitionRepository.PARTITION_PREFIX.length()));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (from.plus(1, interval.getUnit()).compareTo(cutoff) <= 0
+                    && hitPartitionRepository.findMaxHitId(name) <= maxHitId) {
+                hitPartitionRepository.dropPartition(name);
+                log.info("dropped expired partition {}", name);
+            }
+        }
+    }
+
+    private void createUpcoming(LocalDate current) {
+        for (int i = 0; i <= precreate; i++) {
+            LocalDate from = current.plus(i, interval.getUnit());
+            try {
+                createPartition(from);
+            } catch (DataAccessException e) { // в default-секции уже есть хиты этого периода
+                log.warn("failed to create partition for {}: {}", from, e.getMessage());
+            }
+        }
+    }
+
+    private void createPartition(LocalDate from) {
+        String name = HitPartitionRepository.PARTITION_PREFIX + from.format(interval.getSuffixFormatter());
+        hitPartitionRepository.createPartition(name, from, from.plus(1, interval.getUnit()));
+    }
+}
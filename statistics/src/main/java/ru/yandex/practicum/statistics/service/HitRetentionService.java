@@ -0,0 +1,132 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.model.RetentionBoundaries;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.HitRollupRepository;
+import ru.yandex.practicum.statistics.storage.HitTable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// сырые хиты и минутные роллапы хранятся raw-days суток, часовые роллапы - hour-days, суточные - всегда
+@Slf4j
+@Component
+public class HitRetentionService {
+    private final HitRollupRepository hitRollupRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final HitRollupService hitRollupService;
+    private final HitRollupScheduler hitRollupScheduler;
+    private final HitPartitionService hitPartitionService;
+    private final StatsResultCache statsResultCache;
+    private final HitTable hitTable;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int rawDays;
+    private final int hourDays;
+    private final int chunkSize;
+
+    @Autowired
+    public HitRetentionService(HitRollupRepository hitRollupRepository,
+                               HitRetentionRepository hitRetentionRepository,
+                               HitRollupService hitRollupService,
+                               HitRollupScheduler hitRollupScheduler,
+                               HitPartitionService hitPartitionService,
+                               StatsResultCache statsResultCache,
+                               HitTable hitTable,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${statistics.retention.enabled:false}") boolean enabled,
+                               @Value("${statistics.retention.raw-days:0}") int rawDays,
+                               @Value("${statistics.retention.hour-days:0}") int hourDays,
+                               @Value("${statistics.retention.chunk-size:10000}") int chunkSize) {
+        if (hourDays > 0 && (rawDays <= 0 || rawDays > hourDays)) {
+            throw new IllegalArgumentException("statistics.retention.raw-days must be between 1 and hour-days");
+        }
+        this.hitRollupRepository = hitRollupRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.hitRollupService = hitRollupService;
+        this.hitRollupScheduler = hitRollupScheduler;
+        this.hitPartitionService = hitPartitionService;
+        this.statsResultCache = statsResultCache;
+        this.hitTable = hitTable;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.rawDays = rawDays;
+        this.hourDays = hourDays;
+        this.chunkSize = chunkSize;
+    }
+
+    // выполняется тем же однопоточным планировщиком, что и роллер, поэтому не пересекается со сворачиванием
+    @Scheduled(cron = "${statistics.retention.cron:0 15 * * * *}")
+    public void expire() {
+        // без роллапов /stats считается только по сырым хитам, удалять их нельзя
+        if (!enabled || !hitRollupService.isEnabled()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        RetentionBoundaries before = hitRetentionRepository.findBoundaries();
+        if (hourDays > 0) {
+            downsampleHours(today.minusDays(hourDays).atStartOfDay());
+        }
+        if (rawDays > 0) {
+            expireRaw(today.minusDays(rawDays).atStartOfDay());
+        }
+        RetentionBoundaries after = hitRetentionRepository.findBoundaries();
+        if (!after.getRawFrom().equals(before.getRawFrom()) || !after.getHourFrom().equals(before.getHourFrom())) {
+            statsResultCache.invalidateAll();
+        }
+    }
+
+    // часы сворачиваются в сутки по одним суткам за транзакцию вместе со сдвигом границы
+    private void downsampleHours(LocalDateTime cutoff) {
+        LocalDateTime oldest = hitRollupRepository.findOldestBucket(TimeBucket.HOUR);
+        if (oldest == null) {
+            return;
+        }
+        for (LocalDateTime day = TimeBucket.DAY.truncate(oldest); day.isBefore(cutoff); day = day.plusDays(1)) {
+            LocalDateTime from = day;
+            LocalDateTime to = day.plusDays(1);
+            transactionTemplate.executeWithoutResult(status -> {
+                hitRollupRepository.addHits(TimeBucket.DAY,
+                        hitRollupRepository.aggregateBuckets(TimeBucket.HOUR, TimeBucket.DAY, from, to));
+                hitRollupRepository.deleteBuckets(TimeBucket.HOUR, from, to);
+                hitRetentionRepository.saveBoundary(RetentionBoundaries.HOUR, to);
+            });
+        }
+        log.info("hourly rollups downsampled to days before {}", cutoff);
+    }
+
+    private void expireRaw(LocalDateTime cutoff) {
+        // граница сдвигается первой: запросы перестают читать то, что сейчас будет удалено
+        if (cutoff.isAfter(hitRetentionRepository.findBoundaries().getRawFrom())) {
+            hitRetentionRepository.saveBoundary(RetentionBoundaries.RAW, cutoff);
+        }
+
+        LocalDateTime oldest = hitRollupRepository.findOldestBucket(TimeBucket.MINUTE);
+        if (oldest != null) {
+            for (LocalDateTime day = TimeBucket.DAY.truncate(oldest); day.isBefore(cutoff); day = day.plusDays(1)) {
+                hitRollupRepository.deleteBuckets(TimeBucket.MINUTE, day, day.plusDays(1));
+            }
+        }
+
+        // не свёрнутые во все агрегаты хиты остаются до следующего запуска
+        long rolledUpHitId = hitRollupScheduler.findRolledUpHitId();
+        if (hitPartitionService.isEnabled() && !hitTable.isCompact()) {
+            hitPartitionService.dropExpired(cutoff.toLocalDate(), rolledUpHitId);
+        }
+        // целыми секциями уходят только endpoint_hits_p*, в default- и legacy-секциях хиты удаляются построчно
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = hitRetentionRepository.deleteRawBefore(cutoff, rolledUpHitId, chunkSize);
+            deleted += chunk;
+        } while (chunk == chunkSize);
+        log.info("deleted {} raw hits before {}", deleted, cutoff);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.storage.HitRollupRepository;
+import ru.yandex.practicum.statistics.storage.HitWriteFence;
+
+import java.util.List;
+
+@Slf4j
+@Component
+public class HitRollupScheduler {
+    private final List<HitRollupTask> tasks;
+    private final HitRollupRepository hitRollupRepository;
+    private final HitWriteFence hitWriteFence;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @Autowired
+    public HitRollupScheduler(List<HitRollupTask> tasks,
+                              HitRollupRepository hitRollupRepository,
+                              HitWriteFence hitWriteFence,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${statistics.rollup.chunk-size:50000}") int chunkSize) {
+        this.tasks = tasks;
+        this.hitRollupRepository = hitRollupRepository;
+        this.hitWriteFence = hitWriteFence;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.rollup.interval-ms:10000}")
+    public void roll() {
+        if (tasks.stream().noneMatch(HitRollupTask::isEnabled)) {
+            return;
+        }
+        long horizon = hitWriteFence.findCommittedMaxHitId();
+        for (HitRollupTask task : tasks) {
+            if (task.isEnabled()) {
+                roll(task, horizon);
+            }
+        }
+    }
+
+    // хиты с id не больше этого уже учтены во всех включённых агрегатах
+    public long findRolledUpHitId() {
+        return tasks.stream()
+                .filter(HitRollupTask::isEnabled)
+                .mapToLong(task -> hitRollupRepository.findWatermark(task.getWatermarkName()))
+                .min()
+                .orElse(0);
+    }
+
+    // отметка читается под блокировкой строки в той же транзакции, что и свёртка порции:
+    // роллеры нескольких экземпляров не сворачивают одни и те же хиты дважды
+    private void roll(HitRollupTask task, long horizon) {
+        String name = task.getWatermarkName();
+        hitRollupRepository.createWatermark(name);
+        boolean more = true;
+        while (more) {
+            more = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                long fromHitId = hitRollupRepository.lockWatermark(name);
+                if (fromHitId >= horizon) {
+                    return false;
+                }
+                long toHitId = Math.min(horizon, fromHitId + chunkSize);
+                task.rollRange(fromHitId, toHitId);
+                hitRollupRepository.saveWatermark(name, toHitId);
+                log.debug("{}: rolled up hits ({}, {}]", name, fromHitId, toHitId);
+                return true;
+            }));
+        }
+    }
+}
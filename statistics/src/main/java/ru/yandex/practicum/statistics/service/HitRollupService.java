@@ -0,0 +1,111 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.HitRollup;
+import ru.yandex.practicum.statistics.model.RetentionBoundaries;
+import ru.yandex.practicum.statistics.model.RollupPlan;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.storage.HitChangeRepository;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.HitRollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+public class HitRollupService implements HitRollupTask {
+    private final HitRollupRepository hitRollupRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final HitChangeRepository hitChangeRepository;
+    @Getter
+    private final boolean enabled;
+
+    public static final String COUNTS_WATERMARK = "counts";
+    private static final List<TimeBucket> TIERS = List.of(TimeBucket.HOUR, TimeBucket.MINUTE);
+
+    @Autowired
+    public HitRollupService(HitRollupRepository hitRollupRepository,
+                            HitRetentionRepository hitRetentionRepository,
+                            HitChangeRepository hitChangeRepository,
+                            @Value("${statistics.rollup.enabled:true}") boolean enabled) {
+        this.hitRollupRepository = hitRollupRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.hitChangeRepository = hitChangeRepository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String getWatermarkName() {
+        return COUNTS_WATERMARK;
+    }
+
+    // границы хранения и сами данные читаются из одного снимка, чтобы не попасть между даунсэмплингом и удалением
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris) {
+        RetentionBoundaries boundaries = hitRetentionRepository.findBoundaries();
+        boundaries.requireAligned(start, end);
+        return hitRollupRepository.findStats(plan(start, end, boundaries), start, end, uris, COUNTS_WATERMARK);
+    }
+
+    public void forEachStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             int fetchSize,
+                             Consumer<ViewStats> consumer) {
+        RetentionBoundaries boundaries = hitRetentionRepository.findBoundaries();
+        boundaries.requireAligned(start, end);
+        hitRollupRepository.forEachStats(plan(start, end, boundaries), start, end, uris,
+                COUNTS_WATERMARK, fetchSize, consumer);
+    }
+
+    // старше hourFrom остались только суточные роллапы, начиная с rawFrom есть минутные
+    private static RollupPlan plan(LocalDateTime start, LocalDateTime end, RetentionBoundaries boundaries) {
+        return RollupPlan.of(start, end, TIERS, boundaries.getHourFrom());
+    }
+
+    @Override
+    public void rollRange(long fromHitId, long toHitId) {
+        List<HitRollup> minutes = hitRollupRepository.aggregateMinutes(fromHitId, toHitId);
+        hitRollupRepository.addHits(TimeBucket.MINUTE, minutes);
+        hitRollupRepository.addHits(TimeBucket.HOUR, toHours(minutes));
+        // в той же транзакции, что и watermark: лента изменений не расходится с роллапами
+        if (!minutes.isEmpty()) {
+            hitChangeRepository.saveAll(toHitId, toTotals(minutes));
+        }
+    }
+
+    private static List<HitRollup> toHours(List<HitRollup> minutes) {
+        return regroup(minutes, rollup -> new StatsKey(TimeBucket.HOUR.truncate(rollup.getBucket()),
+                rollup.getApp(),
+                rollup.getUri()));
+    }
+
+    private static List<HitRollup> toTotals(List<HitRollup> minutes) {
+        return regroup(minutes, rollup -> StatsKey.of(rollup.getApp(), rollup.getUri()));
+    }
+
+    private static List<HitRollup> regroup(List<HitRollup> rollups, Function<HitRollup, StatsKey> key) {
+        Map<StatsKey, Long> groups = rollups.stream()
+                .collect(Collectors.groupingBy(key, Collectors.summingLong(HitRollup::getHits)));
+
+        return groups.entrySet().stream()
+                .map(entry -> HitRollup.builder()
+                        .bucket(entry.getKey().getBucket())
+                        .app(entry.getKey().getApp())
+                        .uri(entry.getKey().getUri())
+                        .hits(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
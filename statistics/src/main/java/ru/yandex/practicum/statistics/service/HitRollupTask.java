@@ -0,0 +1,9 @@
+package ru.yandex.practicum.statistics.service;
+
+public interface HitRollupTask {
+    String getWatermarkName();
+
+    boolean isEnabled();
+
+    void rollRange(long fromHitId, long toHitId);
+}
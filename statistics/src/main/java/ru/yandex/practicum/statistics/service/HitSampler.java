@@ -0,0 +1,63 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// сохраняется в среднем 1 хит из rate, его hit_count умножается на rate, так что суммы остаются несмещёнными;
+// уникальные ip при rate > 1 занижаются. rate меняется без рестарта: POST /actuator/hitsampling {"rate": N}
+@Slf4j
+@Component
+@Endpoint(id = "hitsampling")
+public class HitSampler {
+    private final Counter dropped;
+    private volatile int rate;
+
+    @Autowired
+    public HitSampler(@Value("${statistics.sampling.rate:1}") int rate, MeterRegistry meterRegistry) {
+        this.dropped = meterRegistry.counter("hits.sampling.dropped");
+        setRate(rate);
+    }
+
+    @ReadOperation
+    public Map<String, Integer> rate() {
+        return Map.of("rate", rate);
+    }
+
+    @WriteOperation
+    public void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("sampling rate must be positive");
+        }
+        this.rate = rate;
+        log.info("hit sampling rate set to 1/{}", rate);
+    }
+
+    public List<EndpointHit> sample(List<EndpointHit> hits) {
+        int current = rate;
+        if (current == 1) {
+            return hits;
+        }
+        List<EndpointHit> kept = new ArrayList<>();
+        for (EndpointHit hit : hits) {
+            if (ThreadLocalRandom.current().nextInt(current) == 0) {
+                hit.setCount(hit.getCount() * current);
+                kept.add(hit);
+            }
+        }
+        dropped.increment(hits.size() - kept.size());
+        return kept;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.RollupPlan;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.sketch.HyperLogLog;
+import ru.yandex.practicum.statistics.storage.HitSketchRepository;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.RawHitRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+public class HitSketchService implements HitRollupTask {
+    private final HitSketchRepository hitSketchRepository;
+    private final RawHitRepository rawHitRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final StatsParallelExecutor statsParallelExecutor;
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final boolean approximateByDefault;
+
+    public static final String SKETCHES_WATERMARK = "sketches";
+    private static final List<TimeBucket> TIERS = List.of(TimeBucket.HOUR);
+
+    @Autowired
+    public HitSketchService(HitSketchRepository hitSketchRepository,
+                            RawHitRepository rawHitRepository,
+                            HitRetentionRepository hitRetentionRepository,
+                            StatsParallelExecutor statsParallelExecutor,
+                            @Value("${statistics.sketch.enabled:true}") boolean enabled,
+                            @Value("${statistics.sketch.approximate-by-default:false}") boolean approximateByDefault) {
+        this.hitSketchRepository = hitSketchRepository;
+        this.rawHitRepository = rawHitRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.statsParallelExecutor = statsParallelExecutor;
+        this.enabled = enabled;
+        this.approximateByDefault = approximateByDefault;
+    }
+
+    @Override
+    public String getWatermarkName() {
+        return SKETCHES_WATERMARK;
+    }
+
+    @Override
+    public void rollRange(long fromHitId, long toHitId) {
+        Map<StatsKey, HyperLogLog> sketches = new HashMap<>();
+        rawHitRepository.forEachBucketIp(TimeBucket.HOUR, fromHitId, toHitId,
+                (key, ip) -> sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+        if (sketches.isEmpty()) {
+            return;
+        }
+
+        Map<StatsKey, HyperLogLog> stored = hitSketchRepository.findByKeys(sketches.keySet());
+        sketches.forEach((key, sketch) -> {
+            HyperLogLog storedSketch = stored.get(key);
+            if (storedSketch != null) {
+                sketch.merge(storedSketch);
+            }
+        });
+        hitSketchRepository.saveAll(sketches, stored.keySet());
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris) {
+        // агрегаты хранятся дольше сырых хитов: там, где сырых уже нет, края должны лежать на границах тира
+        hitRetentionRepository.findBoundaries().requireAligned(start, end, TimeBucket.HOUR);
+        Map<StatsKey, HyperLogLog> merged = statsParallelExecutor.mapReduce(start, end, TimeBucket.HOUR,
+                (from, to) -> collectSketches(from, to, uris),
+                HitSketchService::mergeSketches);
+
+        return merged.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(entry.getKey().getApp())
+                        .uri(entry.getKey().getUri())
+                        .hits(entry.getValue().estimate())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private Map<StatsKey, HyperLogLog> collectSketches(LocalDateTime start, LocalDateTime end, String[] uris) {
+        RollupPlan plan = RollupPlan.of(start, end, TIERS);
+        Map<StatsKey, HyperLogLog> merged = new HashMap<>();
+
+        // сначала сырые хиты, потом скетчи: если роллер успеет сдвинуть watermark между запросами,
+        // хит попадёт в оценку дважды, а повторное добавление ip в HyperLogLog ничего не меняет
+        rawHitRepository.forEachRawIp(start, end, uris, plan.getCoveredFrom(), plan.getCoveredTo(), SKETCHES_WATERMARK,
+                (key, ip) -> merged.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+        if (!plan.isEmpty()) {
+            hitSketchRepository.forEachSketch(plan.getCoveredFrom(), plan.getCoveredTo(), uris,
+                    (key, sketch) -> merged.merge(key, sketch, HyperLogLog::merge));
+        }
+        return merged;
+    }
+
+    private static Map<StatsKey, HyperLogLog> mergeSketches(Map<StatsKey, HyperLogLog> left,
+                                                            Map<StatsKey, HyperLogLog> right) {
+        right.forEach((key, sketch) -> left.merge(key, sketch, HyperLogLog::merge));
+        return left;
+    }
+}
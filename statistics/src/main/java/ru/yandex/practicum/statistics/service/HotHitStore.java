@@ -0,0 +1,327 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+import ru.yandex.practicum.statistics.model.UriFilter;
+import ru.yandex.practicum.statistics.storage.RawHitRepository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// хиты последних window-hours часов в памяти по колонкам: секунда, ключ (app, uri), ip и hit_count.
+// видит только хиты, принятые этим экземпляром, поэтому рассчитан на единственный сервер статистики
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Component
+public class HotHitStore implements HitIngestListener {
+    private static final int LOAD_FETCH_SIZE = 10000;
+    private static final long HOUR_SECONDS = 3600;
+
+    private final RawHitRepository rawHitRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Getter
+    private final boolean enabled;
+    private final int windowHours;
+    private final long maxRows;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // часовые куски по началу часа в epoch-секундах UTC
+    private final TreeMap<Long, HourChunk> chunks = new TreeMap<>();
+    private Map<StatsKey, Integer> keyIds = new HashMap<>();
+    private List<StatsKey> keys = new ArrayList<>();
+    private Map<String, Integer> ipIds = new HashMap<>();
+    private List<String> ips = new ArrayList<>();
+    private long rows;
+    // хранилище полное начиная с этой секунды; до загрузки не отвечает ни на что
+    private long from = Long.MAX_VALUE;
+
+    @Autowired
+    public HotHitStore(RawHitRepository rawHitRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${statistics.hot.enabled:false}") boolean enabled,
+                       @Value("${statistics.hot.window-hours:24}") int windowHours,
+                       @Value("${statistics.hot.max-rows:50000000}") long maxRows) {
+        this.rawHitRepository = rawHitRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.windowHours = windowHours;
+        this.maxRows = maxRows;
+    }
+
+    // до старта веб-сервера, поэтому новые хиты не могут попасть и в загрузку, и в add
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime windowStart = windowStart();
+        lock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> rawHitRepository.forEachHit(windowStart, LOAD_FETCH_SIZE,
+                    hit -> append(toSecond(hit.getTimestamp()), hit)));
+            from = toSecond(windowStart);
+            evict(from);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("hot store loaded {} rows since {}", rows, windowStart);
+    }
+
+    // хиты старше окна остаются только в БД
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (EndpointHit hit : hits) {
+                long second = toSecond(hit.getTimestamp());
+                if (second >= from) {
+                    append(second, hit);
+                }
+            }
+            if (rows > maxRows) {
+                evict(from);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(cron = "${statistics.hot.cron:0 0 * * * *}")
+    public void evictExpired() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            evict(toSecond(windowStart()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // null, пока хранилище не загружено
+    public LocalDateTime getFrom() {
+        lock.readLock().lock();
+        try {
+            return from == Long.MAX_VALUE ? null : LocalDateTime.ofEpochSecond(from, 0, ZoneOffset.UTC);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // null, если start раньше начала окна: такой диапазон считается по БД
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        if (!enabled) {
+            return null;
+        }
+        long startSecond = toSecond(start);
+        long endSecond = toSecond(end);
+        lock.readLock().lock();
+        try {
+            if (startSecond < from) {
+                return null;
+            }
+            byte[] matches = new byte[keys.size()];
+            UriFilter filter = UriFilter.of(uris);
+            Iterable<HourChunk> range = chunks.subMap(hourOf(startSecond), true, endSecond, true).values();
+            return unique
+                    ? countUnique(range, startSecond, endSecond, filter, matches)
+                    : countHits(range, startSecond, endSecond, filter, matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<ViewStats> countHits(Iterable<HourChunk> range,
+                                      long startSecond,
+                                      long endSecond,
+                                      UriFilter filter,
+                                      byte[] matches) {
+        long[] hits = new long[keys.size()];
+        for (HourChunk chunk : range) {
+            for (int i = 0; i < chunk.size; i++) {
+                long second = chunk.seconds[i];
+                int key = chunk.keys[i];
+                if (second >= startSecond && second <= endSecond && matches(key, filter, matches)) {
+                    hits[key] += chunk.counts[i];
+                }
+            }
+        }
+
+        List<ViewStats> stats = new ArrayList<>();
+        for (int key = 0; key < hits.length; key++) {
+            if (hits[key] > 0) {
+                stats.add(toViewStats(key, hits[key]));
+            }
+        }
+        return stats;
+    }
+
+    // пары (ключ, ip) упаковываются в long, после сортировки повторы стоят рядом
+    private List<ViewStats> countUnique(Iterable<HourChunk> range,
+                                       long startSecond,
+                                       long endSecond,
+                                       UriFilter filter,
+                                       byte[] matches) {
+        long[] pairs = new long[64];
+        int size = 0;
+        for (HourChunk chunk : range) {
+            for (int i = 0; i < chunk.size; i++) {
+                long second = chunk.seconds[i];
+                int key = chunk.keys[i];
+                if (second >= startSecond && second <= endSecond && matches(key, filter, matches)) {
+                    if (size == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, size * 2);
+                    }
+                    pairs[size++] = ((long) key << 32) | chunk.ips[i];
+                }
+            }
+        }
+        Arrays.sort(pairs, 0, size);
+
+        List<ViewStats> stats = new ArrayList<>();
+        int i = 0;
+        while (i < size) {
+            int key = (int) (pairs[i] >>> 32);
+            long distinct = 0;
+            long previous = -1;
+            for (; i < size && (int) (pairs[i] >>> 32) == key; i++) {
+                if (pairs[i] != previous) {
+                    distinct++;
+                    previous = pairs[i];
+                }
+            }
+            stats.add(toViewStats(key, distinct));
+        }
+        return stats;
+    }
+
+    // 0 - ещё не проверяли, 1 - uri подходит под фильтр, 2 - не подходит
+    private boolean matches(int key, UriFilter filter, byte[] matches) {
+        if (matches[key] == 0) {
+            matches[key] = filter.matches(keys.get(key).getUri()) ? (byte) 1 : (byte) 2;
+        }
+        return matches[key] == 1;
+    }
+
+    private ViewStats toViewStats(int key, long hits) {
+        return ViewStats.builder()
+                .app(keys.get(key).getApp())
+                .uri(keys.get(key).getUri())
+                .hits(hits)
+                .build();
+    }
+
+    private void append(long second, EndpointHit hit) {
+        int key = keyIds.computeIfAbsent(StatsKey.of(hit.getApp(), hit.getUri()), k -> {
+            keys.add(k);
+            return keys.size() - 1;
+        });
+        int ip = ipIds.computeIfAbsent(hit.getIp(), k -> {
+            ips.add(k);
+            return ips.size() - 1;
+        });
+        chunks.computeIfAbsent(hourOf(second), hour -> new HourChunk()).add(second, key, ip, hit.getCount());
+        rows++;
+    }
+
+    // сдвигает начало окна; при переполнении выбрасывает старейшие часы раньше срока
+    private void evict(long boundary) {
+        long evicted = 0;
+        while (!chunks.isEmpty() && (chunks.firstKey() + HOUR_SECONDS <= boundary || rows > maxRows)) {
+            long hour = chunks.firstKey();
+            rows -= chunks.remove(hour).size;
+            from = Math.max(from, hour + HOUR_SECONDS);
+            evicted++;
+        }
+        from = Math.max(from, boundary);
+        if (evicted > 0) {
+            compactDictionaries();
+        }
+    }
+
+    // словари пересобираются по оставшимся строкам, иначе ключи и ip вытесненных часов копились бы вечно
+    private void compactDictionaries() {
+        Map<StatsKey, Integer> newKeyIds = new HashMap<>();
+        List<StatsKey> newKeys = new ArrayList<>();
+        Map<String, Integer> newIpIds = new HashMap<>();
+        List<String> newIps = new ArrayList<>();
+        for (HourChunk chunk : chunks.values()) {
+            for (int i = 0; i < chunk.size; i++) {
+                chunk.keys[i] = newKeyIds.computeIfAbsent(keys.get(chunk.keys[i]), k -> {
+                    newKeys.add(k);
+                    return newKeys.size() - 1;
+                });
+                chunk.ips[i] = newIpIds.computeIfAbsent(ips.get(chunk.ips[i]), k -> {
+                    newIps.add(k);
+                    return newIps.size() - 1;
+                });
+            }
+        }
+        keyIds = newKeyIds;
+        keys = newKeys;
+        ipIds = newIpIds;
+        ips = newIps;
+    }
+
+    private LocalDateTime windowStart() {
+        return TimeBucket.HOUR.truncate(LocalDateTime.now()).minusHours(windowHours);
+    }
+
+    private static long toSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long hourOf(long second) {
+        return second - Math.floorMod(second, HOUR_SECONDS);
+    }
+
+    private static class HourChunk {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] seconds = new long[INITIAL_CAPACITY];
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private int[] ips = new int[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void add(long second, int key, int ip, int count) {
+            if (size == seconds.length) {
+                int capacity = size * 2;
+                seconds = Arrays.copyOf(seconds, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                ips = Arrays.copyOf(ips, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            seconds[size] = second;
+            keys[size] = key;
+            ips[size] = ip;
+            counts[size] = count;
+            size++;
+        }
+    }
+}
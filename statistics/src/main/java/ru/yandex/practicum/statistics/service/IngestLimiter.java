@@ -0,0 +1,99 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.exceptions.TooManyRequestsException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// не больше max-concurrent одновременных записей хитов, остальные ждут в очереди из max-queued мест;
+// соединения пула сверх max-concurrent и фоновых писателей остаются чтению /stats
+@Component
+public class IngestLimiter {
+    // сброс буфера схлопывания и роллеры идут одним потоком планировщика
+    private static final int SCHEDULER_WRITERS = 1;
+
+    private final Semaphore writers;
+    private final Semaphore queue;
+    private final long queueTimeoutMs;
+    private final long retryAfterSeconds;
+    private final Counter accepted;
+    private final Counter queued;
+    private final Counter shed;
+
+    @Autowired
+    public IngestLimiter(@Value("${statistics.ingest.max-concurrent:8}") int maxConcurrent,
+                         @Value("${statistics.ingest.max-queued:64}") int maxQueued,
+                         @Value("${statistics.ingest.queue-timeout-ms:1000}") long queueTimeoutMs,
+                         @Value("${statistics.ingest.retry-after-seconds:1}") long retryAfterSeconds,
+                         @Value("${statistics.ingest.commit-log.enabled:false}") boolean commitLog,
+                         @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                         MeterRegistry meterRegistry) {
+        // фоновые писатели берут соединения без разрешений, поэтому учитываются здесь: индексатор журнала - свой поток
+        int backgroundWriters = SCHEDULER_WRITERS + (commitLog ? 1 : 0);
+        if (maxConcurrent + backgroundWriters >= poolSize) {
+            throw new IllegalArgumentException("statistics.ingest.max-concurrent plus " + backgroundWriters
+                    + " background writers must be less than the connection pool size " + poolSize
+                    + " to leave connections for reads");
+        }
+        this.writers = new Semaphore(maxConcurrent, true);
+        this.queue = new Semaphore(maxQueued);
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.accepted = meterRegistry.counter("hits.ingest.accepted");
+        this.queued = meterRegistry.counter("hits.ingest.queued");
+        this.shed = meterRegistry.counter("hits.ingest.shed");
+        meterRegistry.gauge("hits.ingest.queue.size", queue, q -> maxQueued - q.availablePermits());
+    }
+
+    // счётчики метрик - в хитах, а не в запросах
+    public <T> T run(int hits, Supplier<T> write) {
+        if (!tryAcquireNow()) {
+            await(hits);
+        }
+        try {
+            T result = write.get();
+            accepted.increment(hits);
+            return result;
+        } finally {
+            writers.release();
+        }
+    }
+
+    // tryAcquire() без таймаута проходит мимо очереди честного семафора, с нулевым - встаёт за ожидающими
+    private boolean tryAcquireNow() {
+        try {
+            return writers.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void await(int hits) {
+        if (!queue.tryAcquire()) {
+            throw shed(hits);
+        }
+        queued.increment(hits);
+        try {
+            if (!writers.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw shed(hits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw shed(hits);
+        } finally {
+            queue.release();
+        }
+    }
+
+    private TooManyRequestsException shed(int hits) {
+        shed.increment(hits);
+        return new TooManyRequestsException("hit ingestion is overloaded", retryAfterSeconds);
+    }
+}
@@ -0,0 +1,220 @@
+package ru.yandex.practicum.statistics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.exceptions.TooManyRequestsException;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.UriFilter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// приращения счётчиков копятся в памяти и раз в interval-ms рассылаются подписчикам /stats/live:
+// на тик одна выборка из накопителя и один фильтр на каждый различный набор uris.
+// отправка идёт потоками send-threads через очередь подписчика из max-pending тиков: медленный клиент
+// не задерживает остальных, а переполнивший очередь отключается. видит только хиты, принятые этим экземпляром
+@Slf4j
+@Component
+public class LiveStatsBroadcaster implements HitIngestListener {
+    private static final String EVENT_NAME = "increments";
+
+    private final long intervalMs;
+    private final long timeoutMs;
+    private final int maxSubscribers;
+    private final int maxPending;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    // ключ удаляется вместе с прочитанным значением: merge и remove атомарны, приращения не теряются
+    private final Map<StatsKey, Long> increments = new ConcurrentHashMap<>();
+    // подписчики с одинаковым набором uris получают один и тот же отфильтрованный список
+    private final Map<List<String>, Set<Subscriber>> groups = new ConcurrentHashMap<>();
+    // отдельный поток: медленный клиент не должен задерживать роллеры на общем планировщике
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders;
+
+    @Autowired
+    public LiveStatsBroadcaster(@Value("${statistics.live.interval-ms:1000}") long intervalMs,
+                                @Value("${statistics.live.timeout-ms:600000}") long timeoutMs,
+                                @Value("${statistics.live.max-subscribers:1000}") int maxSubscribers,
+                                @Value("${statistics.live.send-threads:4}") int sendThreads,
+                                @Value("${statistics.live.max-pending:3}") int maxPending) {
+        this.intervalMs = intervalMs;
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.maxPending = maxPending;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "live-stats-send-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleAtFixedRate(this::broadcast, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        groups.values().forEach(members -> members.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    public SseEmitter subscribe(String[] uris) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new TooManyRequestsException("too many live subscribers", intervalMs / 1000 + 1);
+        }
+        List<String> group = uris == null ? List.of() : Arrays.stream(uris)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, maxPending);
+        groups.compute(group, (k, members) -> {
+            Set<Subscriber> updated = members == null ? new CopyOnWriteArraySet<>() : members;
+            updated.add(subscriber);
+            return updated;
+        });
+
+        Runnable remove = () -> unsubscribe(group, subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    // пока никто не подписан, хиты не копятся
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            increments.merge(StatsKey.of(hit.getApp(), hit.getUri()), (long) hit.getCount(), Long::sum);
+        }
+    }
+
+    private void broadcast() {
+        try {
+            if (subscribers.get() == 0) {
+                increments.clear();
+                return;
+            }
+            Map<StatsKey, Long> tick = drain();
+            groups.forEach((group, members) -> {
+                List<ViewStats> stats = filter(tick, UriFilter.of(group.toArray(new String[0])));
+                for (Subscriber subscriber : members) {
+                    if (!subscriber.pending.offer(stats)) {
+                        // complete ждал бы зависшей отправки, поэтому соединение закрывает поток отправки
+                        log.info("live stats subscriber is {} ticks behind, disconnecting", maxPending);
+                        subscriber.dropped = true;
+                        unsubscribe(group, subscriber);
+                    }
+                    if (subscriber.sending.compareAndSet(false, true)) {
+                        senders.execute(() -> send(group, subscriber));
+                    }
+                }
+            });
+        } catch (RuntimeException e) { // исключение остановило бы scheduleAtFixedRate навсегда
+            log.warn("live stats broadcast failed", e);
+        }
+    }
+
+    // тики одного подписчика уходят по порядку одним потоком за раз; тик, добавленный после опустошения очереди,
+    // но до сброса флага, подхватывается повторной проверкой
+    private void send(List<String> group, Subscriber subscriber) {
+        do {
+            List<ViewStats> stats;
+            while ((stats = subscriber.pending.poll()) != null) {
+                if (subscriber.dropped) {
+                    subscriber.emitter.complete();
+                    return;
+                }
+                try {
+                    subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(stats));
+                } catch (IOException | IllegalStateException e) { // клиент ушёл
+                    unsubscribe(group, subscriber);
+                    subscriber.pending.clear();
+                    return;
+                }
+            }
+            subscriber.sending.set(false);
+        } while (!subscriber.pending.isEmpty() && subscriber.sending.compareAndSet(false, true));
+    }
+
+    // приращения, пришедшие во время чтения, уйдут на следующем тике
+    private Map<StatsKey, Long> drain() {
+        Map<StatsKey, Long> tick = new HashMap<>();
+        for (StatsKey key : increments.keySet()) {
+            Long hits = increments.remove(key);
+            if (hits != null) {
+                tick.put(key, hits);
+            }
+        }
+        return tick;
+    }
+
+    private static List<ViewStats> filter(Map<StatsKey, Long> tick, UriFilter filter) {
+        List<ViewStats> stats = new ArrayList<>();
+        tick.forEach((key, hits) -> {
+            if (filter.matches(key.getUri())) {
+                stats.add(ViewStats.builder()
+                        .app(key.getApp())
+                        .uri(key.getUri())
+                        .hits(hits)
+                        .build());
+            }
+        });
+        return stats;
+    }
+
+    private void unsubscribe(List<String> group, Subscriber subscriber) {
+        groups.computeIfPresent(group, (k, members) -> {
+            if (members.remove(subscriber)) {
+                subscribers.decrementAndGet();
+            }
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<List<ViewStats>> pending;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean dropped;
+
+        Subscriber(SseEmitter emitter, int maxPending) {
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(maxPending);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.yandex.practicum.statistics.dto.StatsJob;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.exceptions.StatsJobNotFoundException;
+import ru.yandex.practicum.statistics.exceptions.TooManyRequestsException;
+import ru.yandex.practicum.statistics.model.DateTimeFormat;
+import ru.yandex.practicum.statistics.model.StatsJobStatus;
+import ru.yandex.practicum.statistics.model.StatsQuery;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// долгие отчёты /stats считаются в фоне: не больше threads задач сразу и столько же занятых соединений,
+// ещё max-queued ждут, остальным 429. Тот же запрос, пока задача жива или её результат не истёк, получает её же
+@Slf4j
+@Component
+public class StatsJobService {
+    private static final long RETRY_AFTER_SECONDS = 10;
+
+    private final EndpointHitService endpointHitService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration resultTtl;
+    private final long maxWaitMs;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // меняется только под блокировкой сервиса
+    private final Map<StatsQuery, Job> jobsByQuery = new HashMap<>();
+
+    @Autowired
+    public StatsJobService(EndpointHitService endpointHitService,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${statistics.jobs.threads:2}") int threads,
+                           @Value("${statistics.jobs.max-queued:20}") int maxQueued,
+                           @Value("${statistics.jobs.timeout-seconds:1800}") int timeoutSeconds,
+                           @Value("${statistics.jobs.result-ttl-minutes:30}") long resultTtlMinutes,
+                           @Value("${statistics.jobs.max-wait-ms:30000}") long maxWaitMs) {
+        this.endpointHitService = endpointHitService;
+        // таймаут транзакции становится таймаутом запросов к БД внутри неё; StatsParallelExecutor в транзакции
+        // не уходит в свой пул, так что таймаут действует на весь отчёт
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout(timeoutSeconds);
+        this.resultTtl = Duration.ofMinutes(resultTtlMinutes);
+        this.maxWaitMs = maxWaitMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued), runnable -> {
+                    Thread thread = new Thread(runnable, "stats-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("stats.jobs.queue.size", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("stats.jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public synchronized StatsJob submit(String start, String end, String[] uris, boolean unique, Boolean exact) {
+        StatsQuery query = endpointHitService.toQuery(start, end, uris, unique, exact);
+        Job existing = jobsByQuery.get(query);
+        if (existing != null && existing.isReusable()) {
+            return existing.toDto();
+        }
+        Job job = new Job(UUID.randomUUID().toString(), query);
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("too many stats jobs", RETRY_AFTER_SECONDS);
+        }
+        jobs.put(job.id, job);
+        jobsByQuery.put(query, job);
+        return job.toDto();
+    }
+
+    // long-poll: ответ приходит, как только задача завершится, но не позже waitMs
+    public DeferredResult<StatsJob> await(String id, long waitMs) {
+        Job job = find(id);
+        long wait = Math.min(waitMs, maxWaitMs);
+        DeferredResult<StatsJob> result = new DeferredResult<>(wait > 0 ? wait : null, job::toDto);
+        if (wait <= 0 || job.done.isDone()) {
+            result.setResult(job.toDto());
+        } else {
+            job.done.thenRun(() -> result.setResult(job.toDto()));
+        }
+        return result;
+    }
+
+    // ждущая задача убирается из очереди; уже отправленный в БД запрос дорабатывает
+    // не дольше timeout-seconds, его результат отбрасывается
+    public StatsJob cancel(String id) {
+        Job job = find(id);
+        if (job.cancel()) {
+            job.future.cancel(true);
+            executor.purge();
+        }
+        return job.toDto();
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.jobs.cleanup-interval-ms:60000}")
+    public synchronized void evictExpired() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(resultTtl);
+        jobs.values().removeIf(job -> {
+            if (!job.isFinishedBefore(expiredBefore)) {
+                return false;
+            }
+            jobsByQuery.remove(job.query, job);
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            List<ViewStats> stats = transactionTemplate.execute(status -> endpointHitService.getStats(job.query));
+            job.finish(StatsJobStatus.DONE, stats, null);
+        } catch (RuntimeException e) {
+            log.warn("stats job {} failed: {}", job.id, e.getMessage());
+            job.finish(StatsJobStatus.FAILED, null, e.getMessage());
+        }
+    }
+
+    private Job find(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new StatsJobNotFoundException("stats job " + id + " not found or expired");
+        }
+        return job;
+    }
+
+    private static class Job {
+        private final String id;
+        private final StatsQuery query;
+        private final LocalDateTime submitted = LocalDateTime.now();
+        // завершается при любом исходе, на нём висят long-poll запросы
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Future<?> future;
+        private StatsJobStatus status = StatsJobStatus.PENDING;
+        private LocalDateTime finished;
+        private List<ViewStats> result;
+        private String error;
+
+        Job(String id, StatsQuery query) {
+            this.id = id;
+            this.query = query;
+        }
+
+        synchronized boolean start() {
+            if (status != StatsJobStatus.PENDING) {
+                return false;
+            }
+            status = StatsJobStatus.RUNNING;
+            return true;
+        }
+
+        synchronized void finish(StatsJobStatus status, List<ViewStats> result, String error) {
+            if (this.status != StatsJobStatus.RUNNING) {
+                return;
+            }
+            this.status = status;
+            this.result = result;
+            this.error = error;
+            this.finished = LocalDateTime.now();
+            done.complete(null);
+        }
+
+        synchronized boolean cancel() {
+            if (status != StatsJobStatus.PENDING && status != StatsJobStatus.RUNNING) {
+                return false;
+            }
+            status = StatsJobStatus.CANCELLED;
+            finished = LocalDateTime.now();
+            done.complete(null);
+            return true;
+        }
+
+        synchronized boolean isReusable() {
+            return status != StatsJobStatus.FAILED && status != StatsJobStatus.CANCELLED;
+        }
+
+        synchronized boolean isFinishedBefore(LocalDateTime dateTime) {
+            return finished != null && finished.isBefore(dateTime);
+        }
+
+        synchronized StatsJob toDto() {
+            DateTimeFormat format = new DateTimeFormat();
+            return StatsJob.builder()
+                    .id(id)
+                    .status(status)
+                    .submitted(submitted.format(format.getFormatter()))
+                    .finished(finished == null ? null : finished.format(format.getFormatter()))
+                    .result(result)
+                    .error(error)
+                    .build();
+        }
+    }
+}
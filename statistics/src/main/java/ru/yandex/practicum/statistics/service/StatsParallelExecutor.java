@@ -0,0 +1,83 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+// широкий диапазон режется на отрезки по segment-days суток, каждый считается отдельным запросом
+// на своём соединении; threads ограничивает и потоки, и занятые соединения пула
+@Component
+public class StatsParallelExecutor {
+    private final boolean enabled;
+    private final int segmentDays;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public StatsParallelExecutor(@Value("${statistics.parallel.enabled:true}") boolean enabled,
+                                 @Value("${statistics.parallel.threads:4}") int threads,
+                                 @Value("${statistics.parallel.segment-days:7}") int segmentDays) {
+        this.enabled = enabled;
+        this.segmentDays = segmentDays;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    // границы отрезков выровнены по align, концы включительные с точностью до секунды, как в between
+    public <T> T mapReduce(LocalDateTime start,
+                           LocalDateTime end,
+                           TimeBucket align,
+                           BiFunction<LocalDateTime, LocalDateTime, T> segment,
+                           BinaryOperator<T> merge) {
+        // транзакция привязана к потоку: отрезки в пуле шли бы мимо её снимка и таймаута (фоновые задачи /stats/jobs),
+        // поэтому внутри транзакции диапазон считается целиком в вызывающем потоке
+        List<LocalDateTime> bounds = split(start, end, align);
+        if (bounds.size() <= 2 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return segment.apply(start, end);
+        }
+
+        List<ForkJoinTask<T>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            LocalDateTime from = bounds.get(i);
+            LocalDateTime to = i + 2 == bounds.size() ? end : bounds.get(i + 1).minusSeconds(1);
+            tasks.add(pool.submit(() -> segment.apply(from, to)));
+        }
+        // join пробрасывает исключение отрезка как есть
+        T result = tasks.get(0).join();
+        for (int i = 1; i < tasks.size(); i++) {
+            result = merge.apply(result, tasks.get(i).join());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+    }
+
+    // start, внутренние границы и end; две точки - резать нечего
+    private List<LocalDateTime> split(LocalDateTime start, LocalDateTime end, TimeBucket align) {
+        List<LocalDateTime> bounds = new ArrayList<>();
+        bounds.add(start);
+        if (!enabled) {
+            bounds.add(end);
+            return bounds;
+        }
+        LocalDateTime next = align.ceil(start.plusDays(segmentDays));
+        while (next.isBefore(end)) {
+            bounds.add(next);
+            next = align.ceil(next.plusDays(segmentDays));
+        }
+        bounds.add(end);
+        return bounds;
+    }
+}
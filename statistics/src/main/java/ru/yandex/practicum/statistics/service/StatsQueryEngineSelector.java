@@ -0,0 +1,39 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.storage.StatsQueryEngine;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// движок запросов по сырым хитам выбирается statistics.query.engine; время запросов пишется
+// в stats.query.engine с тегом engine, чтобы движки можно было сравнить на одной нагрузке
+@Component
+public class StatsQueryEngineSelector {
+    private final StatsQueryEngine engine;
+    private final Timer timer;
+
+    @Autowired
+    public StatsQueryEngineSelector(List<StatsQueryEngine> engines,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${statistics.query.engine:criteria}") String name) {
+        this.engine = engines.stream()
+                .filter(candidate -> candidate.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("statistics.query.engine must be one of "
+                        + engines.stream().map(StatsQueryEngine::getName).collect(Collectors.toList())));
+        this.timer = Timer.builder("stats.query.engine")
+                .tag("engine", name)
+                .register(meterRegistry);
+    }
+
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        return timer.record(() -> engine.findStats(start, end, uris, unique));
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.StatsQuery;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// результаты /stats по закрытым окнам. Хиты в закрытое окно всё же приходят с опозданием: повтор из spool,
+// клиентские метки времени асинхронной отправки, отставание индексатора журнала. Такие хиты после записи
+// в БД вытесняют записи, диапазон которых их покрывает; сдвиг границ хранения сбрасывает кеш целиком.
+// вытеснение видит только хиты, принятые этим экземпляром, поэтому кеш рассчитан на единственный сервер статистики:
+// опоздавший хит, записанный другим экземпляром, до перезапуска не попадёт в закешированные сутки.
+// суммы без unique кешируются по суткам (EndpointHitService), unique - целыми закрытыми окнами
+// слушатель вызывается после HotHitStore, иначе пересчёт между ними закешировал бы память без этих хитов
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Component
+public class StatsResultCache implements HitIngestListener {
+    @Getter
+    private final boolean enabled;
+    private final Duration grace;
+    private final Map<StatsQuery, List<ViewStats>> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    // растёт при каждом вытеснении: результат, посчитанный до него, в кеш уже не кладётся
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public StatsResultCache(@Value("${statistics.cache.enabled:true}") boolean enabled,
+                            @Value("${statistics.cache.size:1000}") int size,
+                            @Value("${statistics.cache.grace-minutes:10}") long graceMinutes,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.grace = Duration.ofMinutes(graceMinutes);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<StatsQuery, List<ViewStats>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatsQuery, List<ViewStats>> eldest) {
+                return size() > size;
+            }
+        });
+        this.hits = meterRegistry.counter("stats.cache.hits");
+        this.misses = meterRegistry.counter("stats.cache.misses");
+        this.evictions = meterRegistry.counter("stats.cache.evictions");
+        Gauge.builder("stats.cache.size", cache, Map::size).register(meterRegistry);
+    }
+
+    // всё, что раньше границы, считается закрытым; граница выровнена по часу, чтобы ключи не менялись каждую секунду
+    public LocalDateTime getClosedBefore() {
+        return LocalDateTime.now().minus(grace).withMinute(0).withSecond(0).withNano(0);
+    }
+
+    public List<ViewStats> get(StatsQuery query, Supplier<List<ViewStats>> loader) {
+        List<ViewStats> stats = cache.get(query);
+        if (stats != null) {
+            hits.increment();
+            return stats;
+        }
+        misses.increment();
+        // два одновременных промаха посчитают одно и то же, результат при этом одинаковый
+        long loadedAt = generation.get();
+        stats = List.copyOf(loader.get());
+        synchronized (cache) {
+            if (generation.get() == loadedAt) {
+                cache.put(query, stats);
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        // хиты позже границы не попадают ни в одну запись: границы записей были раньше неё, а она только растёт
+        LocalDateTime closedBefore = getClosedBefore();
+        NavigableSet<LocalDateTime> late = new TreeSet<>();
+        for (EndpointHit hit : hits) {
+            if (hit.getTimestamp().isBefore(closedBefore)) {
+                late.add(hit.getTimestamp());
+            }
+        }
+        if (late.isEmpty()) {
+            return;
+        }
+        synchronized (cache) {
+            generation.incrementAndGet();
+            cache.keySet().removeIf(query -> {
+                LocalDateTime first = late.ceiling(query.getStart());
+                if (first == null || first.isAfter(query.getEnd())) {
+                    return false;
+                }
+                evictions.increment();
+                return true;
+            });
+        }
+    }
+
+    // после сдвига границ хранения те же запросы читают другие уровни агрегатов
+    public void invalidateAll() {
+        synchronized (cache) {
+            generation.incrementAndGet();
+            cache.clear();
+        }
+    }
+}
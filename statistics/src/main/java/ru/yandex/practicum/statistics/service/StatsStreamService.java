@@ -0,0 +1,102 @@
+package ru.yandex.practicum.statistics.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+import ru.yandex.practicum.statistics.model.DateTimeFormat;
+import ru.yandex.practicum.statistics.storage.HitRetentionRepository;
+import ru.yandex.practicum.statistics.storage.RawHitRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+// /stats построчно в NDJSON: строки идут из курсора прямо в ответ, ничего не копится в памяти
+@Component
+public class StatsStreamService {
+    private final HitRollupService hitRollupService;
+    private final CompactHitService compactHitService;
+    private final RawHitRepository rawHitRepository;
+    private final HitRetentionRepository hitRetentionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+
+    @Autowired
+    public StatsStreamService(HitRollupService hitRollupService,
+                              CompactHitService compactHitService,
+                              RawHitRepository rawHitRepository,
+                              HitRetentionRepository hitRetentionRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${statistics.stream.fetch-size:1000}") int fetchSize) {
+        this.hitRollupService = hitRollupService;
+        this.compactHitService = compactHitService;
+        this.rawHitRepository = rawHitRepository;
+        this.hitRetentionRepository = hitRetentionRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.fetchSize = fetchSize;
+    }
+
+    // даты разбираются сразу, чтобы ошибка вернулась обычным ответом, а не оборвала поток
+    public StreamingResponseBody streamStats(String start, String end, String[] uris, boolean unique) {
+        LocalDateTime startDate = LocalDateTime.parse(start, new DateTimeFormat().getFormatter());
+        LocalDateTime endDate = LocalDateTime.parse(end, new DateTimeFormat().getFormatter());
+        // unique в потоке читает сырые хиты: раньше rawFrom их уже нет, и счёт был бы занижен
+        LocalDateTime rawFrom = hitRetentionRepository.findBoundaries().getRawFrom();
+        if (unique && startDate.isBefore(rawFrom)) {
+            throw new BadRequestException("unique stats stream is available from "
+                    + rawFrom.format(new DateTimeFormat().getFormatter()));
+        }
+
+        return outputStream -> transactionTemplate.executeWithoutResult(status ->
+                write(outputStream, startDate, endDate, uris, unique));
+    }
+
+    // unique в потоке всегда точный: скетчи и битмапы собираются в памяти целиком
+    private void write(OutputStream outputStream, LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            forEachStats(start, end, uris, unique, stats -> writeLine(generator, stats));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // вызывается внутри транзакции, иначе драйвер PostgreSQL прочитает всё сразу
+    public void forEachStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             boolean unique,
+                             Consumer<ViewStats> consumer) {
+        if (!unique && hitRollupService.isEnabled()) {
+            hitRollupService.forEachStats(start, end, uris, fetchSize, consumer);
+        } else if (compactHitService.isEnabled()) {
+            compactHitService.forEachStats(start, end, uris, unique, fetchSize, consumer);
+        } else {
+            rawHitRepository.forEachStats(start, end, uris, unique, fetchSize, consumer);
+        }
+    }
+
+    private void writeLine(JsonGenerator generator, ViewStats stats) {
+        try {
+            generator.writeObject(stats);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
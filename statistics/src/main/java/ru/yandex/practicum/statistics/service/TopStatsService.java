@@ -0,0 +1,47 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.DateTimeFormat;
+import ru.yandex.practicum.statistics.model.TopStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Component
+public class TopStatsService {
+    private final EndpointHitService endpointHitService;
+    private final StatsStreamService statsStreamService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public TopStatsService(EndpointHitService endpointHitService,
+                           StatsStreamService statsStreamService,
+                           PlatformTransactionManager transactionManager) {
+        this.endpointHitService = endpointHitService;
+        this.statsStreamService = statsStreamService;
+        // несколько запросов к уровням роллапов читают один снимок, курсор PostgreSQL живёт только в транзакции
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    // сумма хитов читается из роллапов курсором, в памяти только куча из limit строк;
+    // unique - один запрос /stats, ему транзакция не нужна
+    public List<ViewStats> getTop(String start, String end, String[] uris, boolean unique, Boolean exact, int limit) {
+        TopStats top = new TopStats(limit);
+        if (unique) {
+            endpointHitService.getStats(start, end, uris, true, exact).forEach(top);
+        } else {
+            LocalDateTime startDate = LocalDateTime.parse(start, new DateTimeFormat().getFormatter());
+            LocalDateTime endDate = LocalDateTime.parse(end, new DateTimeFormat().getFormatter());
+            transactionTemplate.executeWithoutResult(status ->
+                    statsStreamService.forEachStats(startDate, endDate, uris, false, top));
+        }
+        return top.toList();
+    }
+}
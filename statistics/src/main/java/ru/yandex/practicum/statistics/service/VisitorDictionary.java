@@ -0,0 +1,89 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.statistics.storage.VisitorRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class VisitorDictionary {
+    private final VisitorRepository visitorRepository;
+    private final Map<String, Integer> cache;
+
+    @Autowired
+    public VisitorDictionary(VisitorRepository visitorRepository,
+                             @Value("${statistics.bitmap.dictionary-cache-size:200000}") int cacheSize) {
+        this.visitorRepository = visitorRepository;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public Map<String, Integer> findIds(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String ip : ips) {
+            Integer id = cache.get(ip);
+            if (id != null) {
+                ids.put(ip, id);
+            } else {
+                missing.add(ip);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Integer> found = visitorRepository.findIds(missing);
+            cache.putAll(found);
+            ids.putAll(found);
+        }
+        return ids;
+    }
+
+    // вызывается только роллером внутри его транзакции
+    public Map<String, Integer> getOrCreateIds(Collection<String> ips) {
+        Map<String, Integer> ids = findIds(ips);
+        List<String> missing = new ArrayList<>();
+        for (String ip : ips) {
+            if (!ids.containsKey(ip)) {
+                missing.add(ip);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            evictOnRollback();
+            visitorRepository.saveAll(missing);
+            Map<String, Integer> created = visitorRepository.findIds(missing);
+            cache.putAll(created);
+            ids.putAll(created);
+        }
+        return ids;
+    }
+
+    // id из откатившейся транзакции могут быть выданы другим ip, их нельзя оставлять в кеше
+    private void evictOnRollback() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    cache.clear();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,254 @@
+package ru.yandex.practicum.statistics.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// упрощённый Roaring bitmap: старшие 16 бит значения выбирают контейнер, младшие хранятся
+// в отсортированном массиве (до 4096 значений) или в битовой карте на 65536 бит
+public class RoaringBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+
+    private final TreeMap<Character, Container> containers = new TreeMap<>();
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            char key = buffer.getChar();
+            byte type = buffer.get();
+            int cardinality = buffer.getInt();
+            if (type == ARRAY_CONTAINER) {
+                char[] values = new char[cardinality];
+                buffer.asCharBuffer().get(values);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+                bitmap.containers.put(key, new ArrayContainer(values, cardinality));
+            } else {
+                long[] words = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+                bitmap.containers.put(key, new BitmapContainer(words, cardinality));
+            }
+        }
+        return bitmap;
+    }
+
+    public byte[] toBytes() {
+        int size = Integer.BYTES;
+        for (Container container : containers.values()) {
+            size += Character.BYTES + 1 + Integer.BYTES + container.serializedSize();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(containers.size());
+        for (Map.Entry<Character, Container> entry : containers.entrySet()) {
+            buffer.putChar(entry.getKey());
+            entry.getValue().writeTo(buffer);
+        }
+        return buffer.array();
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        Container container = containers.get(key);
+        if (container == null) {
+            container = new ArrayContainer();
+        }
+        containers.put(key, container.add((char) value));
+    }
+
+    public RoaringBitmap or(RoaringBitmap other) {
+        for (Map.Entry<Character, Container> entry : other.containers.entrySet()) {
+            Container container = containers.get(entry.getKey());
+            containers.put(entry.getKey(), container == null ? entry.getValue().copy() : container.or(entry.getValue()));
+        }
+        return this;
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (Container container : containers.values()) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract int cardinality();
+
+        abstract BitmapContainer toBitmap();
+
+        abstract int serializedSize();
+
+        abstract void writeTo(ByteBuffer buffer);
+    }
+
+    private static class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer)) {
+                return other.copy().or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[size + array.size];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size && j < array.size) {
+                if (values[i] < array.values[j]) {
+                    merged[k++] = values[i++];
+                } else if (values[i] > array.values[j]) {
+                    merged[k++] = array.values[j++];
+                } else {
+                    merged[k++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < size) {
+                merged[k++] = values[i++];
+            }
+            while (j < array.size) {
+                merged[k++] = array.values[j++];
+            }
+
+            ArrayContainer result = new ArrayContainer(merged, k);
+            return k > ARRAY_LIMIT ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        int serializedSize() {
+            return size * Character.BYTES;
+        }
+
+        @Override
+        void writeTo(ByteBuffer buffer) {
+            buffer.put(ARRAY_CONTAINER);
+            buffer.putInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.putChar(values[i]);
+            }
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & mask) == 0) {
+                words[index] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer bitmap = other.toBitmap();
+            cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= bitmap.words[i];
+                cardinality += Long.bitCount(words[i]);
+            }
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        @Override
+        int serializedSize() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+
+        @Override
+        void writeTo(ByteBuffer buffer) {
+            buffer.put(BITMAP_CONTAINER);
+            buffer.putInt(cardinality);
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+    }
+}
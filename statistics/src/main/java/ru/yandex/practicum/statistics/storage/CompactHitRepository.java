@@ -0,0 +1,103 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.CompactHit;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class CompactHitRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private static final String INSERT_HIT =
+            "insert into compact_hits (app_id, uri_id, ip, hit_timestamp, hit_count) values (?, ?, ?, ?, ?)";
+
+    @Autowired
+    public CompactHitRepository(JdbcTemplate jdbcTemplate,
+                                @Value("${statistics.ingest.jdbc-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public long save(CompactHit hit) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_HIT, new String[]{"id"});
+            bind(statement, hit);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    @Transactional
+    public int saveAll(List<CompactHit> hits) {
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, CompactHitRepository::bind);
+        return hits.size();
+    }
+
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        List<Object> params = new ArrayList<>();
+        String sql = statsSql(start, end, uris, unique, params);
+
+        return jdbcTemplate.query(sql, ViewStatsCursor.MAPPER, params.toArray());
+    }
+
+    public void forEachStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             boolean unique,
+                             int fetchSize,
+                             Consumer<ViewStats> consumer) {
+        List<Object> params = new ArrayList<>();
+        String sql = statsSql(start, end, uris, unique, params);
+
+        ViewStatsCursor.forEach(jdbcTemplate, sql, params, fetchSize, consumer);
+    }
+
+    // группировка идёт по целочисленным ключам, строки словарей подставляются уже к готовым группам
+    private static String statsSql(LocalDateTime start,
+                                   LocalDateTime end,
+                                   String[] uris,
+                                   boolean unique,
+                                   List<Object> params) {
+        StringBuilder sql = new StringBuilder("select a.name as app, u.uri as uri, t.hits as hits from (")
+                .append("select app_id, uri_id, ")
+                .append(unique ? "count(distinct ip)" : "sum(hit_count)")
+                .append(" as hits from compact_hits where hit_timestamp between ? and ?");
+        params.add(Timestamp.valueOf(start));
+        params.add(Timestamp.valueOf(end));
+        if (uris != null && uris.length > 0) {
+            sql.append(" and uri_id in (select id from hit_uris where 1 = 1");
+            UriSql.appendUriFilter(sql, params, uris);
+            sql.append(")");
+        }
+        sql.append(" group by app_id, uri_id) as t")
+                .append(" join hit_apps as a on a.id = t.app_id")
+                .append(" join hit_uris as u on u.id = t.uri_id");
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement statement, CompactHit hit) throws SQLException {
+        statement.setShort(1, hit.getAppId());
+        statement.setInt(2, hit.getUriId());
+        statement.setBytes(3, hit.getIp());
+        statement.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        statement.setInt(5, hit.getCount());
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.UriFilter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Component
+public class CriteriaStatsQueryEngine implements StatsQueryEngine {
+    public static final String NAME = "criteria";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<EndpointHit> root = query.from(EndpointHit.class);
+        List<Predicate> predicates = new ArrayList<>();
+
+        Path<LocalDateTime> dateTimePath = root.get("timestamp");
+        predicates.add(builder.between(dateTimePath, start, end));
+
+        UriFilter uriFilter = UriFilter.of(uris);
+        if (!uriFilter.isEmpty()) {
+            predicates.add(uriPredicate(builder, root.get("uri"), uriFilter));
+        }
+
+        if (unique) {
+            query.multiselect(root.get("app"), root.get("uri"), builder.countDistinct(root.get("ip")));
+        } else {
+            query.multiselect(root.get("app"), root.get("uri"), builder.sumAsLong(root.get("count")));
+        }
+
+        query.where(predicates.toArray(new Predicate[]{}));
+        query.groupBy(root.get("app"), root.get("uri"));
+
+        List<ViewStats> statisticsDtos = new ArrayList<>();
+        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
+        for (Tuple tuple : tuples) {
+            statisticsDtos.add(ViewStats.builder()
+                    .app(tuple.get(0, String.class))
+                    .uri(tuple.get(1, String.class))
+                    .hits(tuple.get(2, Long.class))
+                    .build());
+        }
+
+        return statisticsDtos;
+    }
+
+    private static Predicate uriPredicate(CriteriaBuilder builder, Path<String> uri, UriFilter uriFilter) {
+        List<Predicate> alternatives = new ArrayList<>();
+        if (!uriFilter.getExact().isEmpty()) {
+            alternatives.add(uri.in(uriFilter.getExact()));
+        }
+        for (String prefix : uriFilter.getPrefixes()) {
+            alternatives.add(builder.like(uri, prefix + "%"));
+        }
+        for (String pattern : uriFilter.getPatterns()) {
+            alternatives.add(builder.like(uri, pattern));
+        }
+        return builder.or(alternatives.toArray(new Predicate[]{}));
+    }
+}
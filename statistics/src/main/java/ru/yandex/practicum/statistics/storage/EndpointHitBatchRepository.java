@@ -0,0 +1,41 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public class EndpointHitBatchRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private static final String INSERT_HIT =
+            "insert into endpoint_hits (app, uri, ip, hit_timestamp, hit_count) values (?, ?, ?, ?, ?)";
+
+    @Autowired
+    public EndpointHitBatchRepository(JdbcTemplate jdbcTemplate,
+                                      @Value("${statistics.ingest.jdbc-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public int saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (statement, hit) -> {
+            statement.setString(1, hit.getApp());
+            statement.setString(2, hit.getUri());
+            statement.setString(3, hit.getIp());
+            statement.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            statement.setInt(5, hit.getCount());
+        });
+        return hits.size();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.sketch.RoaringBitmap;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+@Repository
+public class HitBitmapRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final int BATCH_SIZE = 100;
+    private static final String UPDATE_BITMAP =
+            "update visitor_bitmaps_day set bitmap = ? where bucket = ? and app = ? and uri = ?";
+    private static final String INSERT_BITMAP =
+            "insert into visitor_bitmaps_day (bucket, app, uri, bitmap) values (?, ?, ?, ?)";
+
+    // только пары (день, app, uri) из текущего чанка, а не все битмапы затронутых дней
+    public Map<StatsKey, RoaringBitmap> findByKeys(Collection<StatsKey> keys) {
+        Map<StatsKey, RoaringBitmap> bitmaps = new HashMap<>();
+        List<StatsKey> keyList = new ArrayList<>(keys);
+        for (int from = 0; from < keyList.size(); from += BATCH_SIZE) {
+            List<StatsKey> batch = keyList.subList(from, Math.min(from + BATCH_SIZE, keyList.size()));
+            String placeholders = batch.stream()
+                    .map(key -> "(?, ?, ?)")
+                    .collect(Collectors.joining(", "));
+            Object[] params = batch.stream()
+                    .flatMap(key -> Stream.of(Timestamp.valueOf(key.getBucket()), key.getApp(), key.getUri()))
+                    .toArray();
+
+            jdbcTemplate.query("select bucket, app, uri, bitmap from visitor_bitmaps_day where (bucket, app, uri) in ("
+                            + placeholders + ")",
+                    rs -> {
+                        bitmaps.put(new StatsKey(rs.getTimestamp("bucket").toLocalDateTime(),
+                                        rs.getString("app"),
+                                        rs.getString("uri")),
+                                RoaringBitmap.fromBytes(rs.getBytes("bitmap")));
+                    }, params);
+        }
+        return bitmaps;
+    }
+
+    public void saveAll(Map<StatsKey, RoaringBitmap> bitmaps, Set<StatsKey> existing) {
+        List<Map.Entry<StatsKey, RoaringBitmap>> updates = new ArrayList<>();
+        List<Map.Entry<StatsKey, RoaringBitmap>> inserts = new ArrayList<>();
+        for (Map.Entry<StatsKey, RoaringBitmap> entry : bitmaps.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                updates.add(entry);
+            } else {
+                inserts.add(entry);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(UPDATE_BITMAP, updates, BATCH_SIZE, (statement, entry) -> {
+            statement.setBytes(1, entry.getValue().toBytes());
+            statement.setTimestamp(2, Timestamp.valueOf(entry.getKey().getBucket()));
+            statement.setString(3, entry.getKey().getApp());
+            statement.setString(4, entry.getKey().getUri());
+        });
+        jdbcTemplate.batchUpdate(INSERT_BITMAP, inserts, BATCH_SIZE, (statement, entry) -> {
+            statement.setTimestamp(1, Timestamp.valueOf(entry.getKey().getBucket()));
+            statement.setString(2, entry.getKey().getApp());
+            statement.setString(3, entry.getKey().getUri());
+            statement.setBytes(4, entry.getValue().toBytes());
+        });
+    }
+
+    public void forEachBitmap(LocalDateTime from,
+                              LocalDateTime to,
+                              String[] uris,
+                              BiConsumer<StatsKey, RoaringBitmap> consumer) {
+        StringBuilder sql = new StringBuilder("select app, uri, bitmap from visitor_bitmaps_day where bucket >= ? and bucket < ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        UriSql.appendUriFilter(sql, params, uris);
+
+        jdbcTemplate.query(sql.toString(), rs -> {
+            consumer.accept(StatsKey.of(rs.getString("app"), rs.getString("uri")),
+                    RoaringBitmap.fromBytes(rs.getBytes("bitmap")));
+        }, params.toArray());
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.HitRollup;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// приращения счётчиков (app, uri) по кускам роллера; position - id последнего хита куска
+@RequiredArgsConstructor
+@Repository
+public class HitChangeRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_CHANGE =
+            "insert into hit_count_changes (position, app, uri, hits, created_at) values (?, ?, ?, ?, ?)";
+
+    // bucket у rollups не используется, строки с одинаковыми (app, uri) должны быть уже сложены
+    public void saveAll(long position, List<HitRollup> rollups) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, rollups, BATCH_SIZE, (statement, rollup) -> {
+            statement.setLong(1, position);
+            statement.setString(2, rollup.getApp());
+            statement.setString(3, rollup.getUri());
+            statement.setLong(4, rollup.getHits());
+            statement.setTimestamp(5, now);
+        });
+    }
+
+    public long findMaxPosition() {
+        Long position = jdbcTemplate.queryForObject("select max(position) from hit_count_changes", Long.class);
+        return position == null ? 0 : position;
+    }
+
+    public List<ViewStats> findChanges(long afterPosition, long toPosition) {
+        return jdbcTemplate.query("select app, uri, sum(hits) as hits from hit_count_changes"
+                        + " where position > ? and position <= ? group by app, uri",
+                ViewStatsCursor.MAPPER, afterPosition, toPosition);
+    }
+
+    // возвращает последнюю удалённую позицию или 0, если удалять нечего
+    public long deleteCreatedBefore(LocalDateTime cutoff) {
+        Long position = jdbcTemplate.queryForObject(
+                "select max(position) from hit_count_changes where created_at < ?", Long.class,
+                Timestamp.valueOf(cutoff));
+        if (position == null) {
+            return 0;
+        }
+        jdbcTemplate.update("delete from hit_count_changes where position <= ?", position);
+        return position;
+    }
+}
@@ -0,0 +1,298 @@
+package ru.yandex.practicum.statistics.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.statistics.dto.HitBatchCodec;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// журнал приёма: отображённые в память сегменты, запись - длина, crc32 и пачка хитов в HitBatchCodec версии 2.
+// позиция в журнале сквозная, сегмент называется позицией своей первой записи; позиция проиндексированного
+// хранится в hit_rollup_state и сохраняется в одной транзакции с пачкой хитов.
+// один журнал на сервер статистики: несколько экземпляров затирали бы позиции друг друга
+@Slf4j
+@Component
+public class HitCommitLog {
+    public static final String INDEXED_WATERMARK = "commit_log";
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final HitRollupRepository hitRollupRepository;
+    private final MeterRegistry registry;
+    @Getter
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    // читатель берёт сегменты без блокировки писателя
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+
+    private long writeBase;
+    private MappedByteBuffer writeBuffer;
+    private long written;
+    // индексатор читает только то, что уже на диске: иначе позиция в БД могла бы обогнать журнал после падения
+    private volatile long synced;
+    @Getter
+    private volatile long indexedOffset;
+
+    @Autowired
+    public HitCommitLog(HitRollupRepository hitRollupRepository,
+                        MeterRegistry registry,
+                        @Value("${statistics.ingest.commit-log.enabled:false}") boolean enabled,
+                        @Value("${statistics.ingest.commit-log.dir:hit-log}") String dir,
+                        @Value("${statistics.ingest.commit-log.segment-bytes:67108864}") int segmentBytes) {
+        this.hitRollupRepository = hitRollupRepository;
+        this.registry = registry;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.segmentBytes = segmentBytes;
+    }
+
+    // сегменты целиком до проиндексированной позиции удаляются, недописанный хвост последнего обнуляется
+    @PostConstruct
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        indexedOffset = hitRollupRepository.findWatermark(INDEXED_WATERMARK);
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                List<Long> bases = files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .collect(Collectors.toList());
+                for (Long base : bases) {
+                    segments.put(base, map(base));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open hit commit log " + dir, e);
+        }
+        release(indexedOffset);
+
+        if (segments.isEmpty()) {
+            openSegment(indexedOffset);
+        } else {
+            Map.Entry<Long, MappedByteBuffer> last = segments.lastEntry();
+            writeBase = last.getKey();
+            writeBuffer = last.getValue();
+            int end = scanEnd(writeBuffer);
+            writeBuffer.position(end);
+            ByteBuffer tail = writeBuffer.duplicate();
+            while (tail.hasRemaining()) {
+                tail.put((byte) 0);
+            }
+            writeBuffer.force();
+            written = writeBase + end;
+            if (written < indexedOffset) {
+                log.warn("hit commit log ends at {} before indexed offset {}, starting a new segment",
+                        written, indexedOffset);
+                openSegment(indexedOffset);
+            }
+        }
+        synced = written;
+        log.info("hit commit log recovered: {} bytes to index from {}", synced - indexedOffset, indexedOffset);
+
+        Gauge.builder("hits.ingest.log.lag", this, commitLog -> commitLog.synced - commitLog.indexedOffset)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            writeBuffer.force();
+        }
+    }
+
+    // возвращает только после fsync; параллельные запросы сбрасываются на диск одним force
+    public void append(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        byte[] payload = HitBatchCodec.encodeCounted(hits);
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("hit batch of " + size + " bytes exceeds commit log segment");
+        }
+        long end;
+        synchronized (writeLock) {
+            if (writeBuffer.remaining() < size) {
+                // прежний сегмент сбрасывается целиком, дальше force нужен только текущему
+                writeBuffer.force();
+                openSegment(written);
+            }
+            writeBuffer.putInt(payload.length);
+            writeBuffer.putInt(crc(payload));
+            writeBuffer.put(payload);
+            written = writeBase + writeBuffer.position();
+            end = written;
+        }
+        sync(end);
+    }
+
+    // хиты записей от offset не дальше fsync-нутой границы; записи не режутся, поэтому хитов может быть больше maxHits
+    public Batch read(long offset, int maxHits) {
+        long limit = synced;
+        List<EndpointHit> hits = new ArrayList<>();
+        while (offset < limit && hits.size() < maxHits) {
+            Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(offset);
+            if (segment == null) {
+                throw new IllegalStateException("hit commit log offset " + offset + " is not on disk");
+            }
+            long base = segment.getKey();
+            ByteBuffer buffer = segment.getValue().duplicate();
+            int position = (int) (offset - base);
+            int end = (int) Math.min(segmentBytes, limit - base);
+            int length = position + HEADER_BYTES <= end ? buffer.getInt(position) : 0;
+            if (length <= 0) {
+                // остаток сегмента пуст, следующая запись - в начале следующего сегмента
+                Long next = segments.higherKey(base);
+                if (next == null || next > limit) {
+                    break;
+                }
+                offset = next;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            buffer.position(position + HEADER_BYTES);
+            buffer.get(payload);
+            if (crc(payload) != buffer.getInt(position + 4)) {
+                throw new IllegalStateException("hit commit log record at " + offset + " is corrupted");
+            }
+            hits.addAll(HitBatchCodec.decodeCounted(payload));
+            offset += HEADER_BYTES + length;
+        }
+        return new Batch(hits, offset);
+    }
+
+    // вызывается в транзакции вставки пачки
+    public void saveIndexedOffset(long offset) {
+        hitRollupRepository.saveWatermark(INDEXED_WATERMARK, offset);
+    }
+
+    // после коммита: удаляет сегменты, все записи которых уже в БД
+    public void release(long offset) {
+        indexedOffset = offset;
+        for (Long base : new ArrayList<>(segments.keySet())) {
+            Long next = segments.higherKey(base);
+            if (next == null || next > offset) {
+                return;
+            }
+            segments.remove(base);
+            try {
+                Files.deleteIfExists(segmentPath(base));
+            } catch (IOException e) {
+                log.warn("cannot delete hit commit log segment {}: {}", base, e.getMessage());
+            }
+        }
+    }
+
+    private void sync(long end) {
+        synchronized (syncLock) {
+            if (synced >= end) {
+                return;
+            }
+            long target;
+            MappedByteBuffer buffer;
+            synchronized (writeLock) {
+                target = written;
+                buffer = writeBuffer;
+            }
+            buffer.force();
+            synced = target;
+        }
+    }
+
+    private void openSegment(long base) {
+        try {
+            MappedByteBuffer buffer = map(base);
+            // fsync каталога, иначе после падения может не оказаться самого файла сегмента
+            try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+            segments.put(base, buffer);
+            writeBase = base;
+            writeBuffer = buffer;
+            written = base;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open hit commit log segment " + base, e);
+        }
+    }
+
+    // отображение остаётся действительным и после закрытия канала
+    private MappedByteBuffer map(long base) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    // конец последней целой записи: дальше нули или оборванная при падении запись
+    private int scanEnd(ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER_BYTES);
+            view.get(payload);
+            if (crc(payload) != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Batch {
+        private final List<EndpointHit> hits;
+        private final long nextOffset;
+    }
+}
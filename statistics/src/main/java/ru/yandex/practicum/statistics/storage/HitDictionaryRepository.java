@@ -0,0 +1,37 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+public class HitDictionaryRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public short getOrCreateAppId(String app) {
+        return (short) getOrCreateId("hit_apps", "name", app);
+    }
+
+    public int getOrCreateUriId(String uri) {
+        return getOrCreateId("hit_uris", "uri", uri);
+    }
+
+    // вызывается вне транзакции приёма: id словаря должен пережить откат пачки хитов
+    private int getOrCreateId(String table, String column, String value) {
+        String select = "select id from " + table + " where " + column + " = ?";
+        List<Integer> ids = jdbcTemplate.queryForList(select, Integer.class, value);
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+        try {
+            jdbcTemplate.update("insert into " + table + " (" + column + ") values (?)", value);
+        } catch (DuplicateKeyException e) {
+            // значение успел добавить параллельный запрос
+        }
+        return jdbcTemplate.queryForObject(select, Integer.class, value);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Repository
+public class HitPartitionRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public static final String PARTITION_PREFIX = "endpoint_hits_p";
+    // таблица, созданная до секционирования, становится секцией [MINVALUE, дата перевода)
+    public static final String LEGACY_PARTITION = "endpoint_hits_legacy";
+    private static final String IS_PARTITIONED = "select count(*) from pg_partitioned_table "
+            + "join pg_class on pg_class.oid = pg_partitioned_table.partrelid "
+            + "where pg_class.relname = 'endpoint_hits'";
+    private static final String FIND_PARTITIONS = "select child.relname from pg_inherits "
+            + "join pg_class parent on parent.oid = pg_inherits.inhparent "
+            + "join pg_class child on child.oid = pg_inherits.inhrelid "
+            + "where parent.relname = 'endpoint_hits' and child.relname like '" + PARTITION_PREFIX + "%'";
+
+    public boolean isPartitioned() {
+        return jdbcTemplate.queryForObject(IS_PARTITIONED, Integer.class) > 0;
+    }
+
+    // первый шаг перевода, в одной транзакции с createPartition и attachLegacy: identity-столбец
+    // в секционированной таблице недопустим, id продолжает последовательность с max(id) старой таблицы
+    public void createPartitionedTable() {
+        jdbcTemplate.execute("alter table endpoint_hits rename to " + LEGACY_PARTITION);
+        jdbcTemplate.execute("alter table " + LEGACY_PARTITION + " rename constraint pk_hit to pk_hit_legacy");
+        jdbcTemplate.execute("alter index if exists idx_hit_timestamp rename to idx_hit_timestamp_legacy");
+        jdbcTemplate.execute("alter index if exists idx_hit_uri rename to idx_hit_uri_legacy");
+        jdbcTemplate.execute("create sequence if not exists endpoint_hits_id_seq");
+        jdbcTemplate.queryForObject("select setval('endpoint_hits_id_seq', "
+                + "(select coalesce(max(id), 0) + 1 from " + LEGACY_PARTITION + "), false)", Long.class);
+        jdbcTemplate.execute("create table endpoint_hits ("
+                + "id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_id_seq'), "
+                + "app VARCHAR(100) NOT NULL, "
+                + "uri VARCHAR(2000) NOT NULL, "
+                + "ip VARCHAR(40) NOT NULL, "
+                + "hit_timestamp TIMESTAMP NOT NULL, "
+                + "hit_count INTEGER NOT NULL DEFAULT 1, "
+                + "CONSTRAINT pk_hit PRIMARY KEY (id, hit_timestamp)"
+                + ") partition by range (hit_timestamp)");
+        jdbcTemplate.execute("create table endpoint_hits_default partition of endpoint_hits default");
+        jdbcTemplate.execute("create index idx_hit_timestamp on endpoint_hits (hit_timestamp)");
+        jdbcTemplate.execute("create index idx_hit_uri on endpoint_hits (uri varchar_pattern_ops, hit_timestamp)");
+    }
+
+    // хиты с upper и позже переезжают в новые секции, остальное подключается как есть;
+    // подходящие индексы старой таблицы подключаются к индексам родителя, недостающие строятся
+    public void attachLegacy(LocalDate upper) {
+        jdbcTemplate.update("insert into endpoint_hits (id, app, uri, ip, hit_timestamp, hit_count) "
+                + "select id, app, uri, ip, hit_timestamp, hit_count from " + LEGACY_PARTITION
+                + " where hit_timestamp >= ?", upper.atStartOfDay());
+        jdbcTemplate.update("delete from " + LEGACY_PARTITION + " where hit_timestamp >= ?", upper.atStartOfDay());
+        jdbcTemplate.execute("alter table " + LEGACY_PARTITION + " alter column id drop identity if exists");
+        jdbcTemplate.execute("alter table " + LEGACY_PARTITION + " drop constraint pk_hit_legacy");
+        jdbcTemplate.execute("alter table endpoint_hits attach partition " + LEGACY_PARTITION
+                + " for values from (minvalue) to ('" + upper + "')");
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS, String.class);
+    }
+
+    // имена и границы формируются из дат, поэтому DDL собирается строкой
+    public void createPartition(String name, LocalDate from, LocalDate to) {
+        jdbcTemplate.execute("create table if not exists " + name + " partition of endpoint_hits "
+                + "for values from ('" + from + "') to ('" + to + "')");
+    }
+
+    public long findMaxHitId(String name) {
+        Long id = jdbcTemplate.queryForObject("select max(id) from " + name, Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("drop table if exists " + name);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.statistics.model.RetentionBoundaries;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+@Repository
+public class HitRetentionRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final HitTable hitTable;
+
+    private static final String FIND_BOUNDARIES = "select tier, available_from from hit_retention_state";
+    private static final String UPDATE_BOUNDARY = "update hit_retention_state set available_from = ? where tier = ?";
+    private static final String INSERT_BOUNDARY = "insert into hit_retention_state (tier, available_from) values (?, ?)";
+
+    public RetentionBoundaries findBoundaries() {
+        Map<String, LocalDateTime> boundaries = new HashMap<>();
+        jdbcTemplate.query(FIND_BOUNDARIES, rs -> {
+            boundaries.put(rs.getString("tier"), rs.getTimestamp("available_from").toLocalDateTime());
+        });
+        return new RetentionBoundaries(
+                boundaries.getOrDefault(RetentionBoundaries.RAW, RetentionBoundaries.UNBOUNDED),
+                boundaries.getOrDefault(RetentionBoundaries.HOUR, RetentionBoundaries.UNBOUNDED));
+    }
+
+    public void saveBoundary(String tier, LocalDateTime availableFrom) {
+        if (jdbcTemplate.update(UPDATE_BOUNDARY, Timestamp.valueOf(availableFrom), tier) == 0) {
+            jdbcTemplate.update(INSERT_BOUNDARY, tier, Timestamp.valueOf(availableFrom));
+        }
+    }
+
+    // удаляются только хиты, уже учтённые во всех агрегатах, не больше limit за раз
+    public int deleteRawBefore(LocalDateTime cutoff, long maxHitId, int limit) {
+        String table = hitTable.getBaseTable();
+        return jdbcTemplate.update("delete from " + table + " where hit_timestamp < ? and id in "
+                        + "(select id from " + table + " where hit_timestamp < ? and id <= ? limit ?)",
+                Timestamp.valueOf(cutoff), Timestamp.valueOf(cutoff), maxHitId, limit);
+    }
+}
@@ -0,0 +1,262 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.HitRollup;
+import ru.yandex.practicum.statistics.model.RollupPlan;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+@Repository
+public class HitRollupRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final HitTable hitTable;
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String FIND_WATERMARK = "select last_hit_id from hit_rollup_state where name = ?";
+    private static final String UPDATE_WATERMARK = "update hit_rollup_state set last_hit_id = ? where name = ?";
+    private static final String INSERT_WATERMARK = "insert into hit_rollup_state (name, last_hit_id) values (?, ?)";
+
+    public long findWatermark(String name) {
+        List<Long> ids = jdbcTemplate.queryForList(FIND_WATERMARK, Long.class, name);
+        return ids.isEmpty() ? 0 : ids.get(0);
+    }
+
+    public void saveWatermark(String name, long hitId) {
+        if (jdbcTemplate.update(UPDATE_WATERMARK, hitId, name) == 0) {
+            jdbcTemplate.update(INSERT_WATERMARK, name, hitId);
+        }
+    }
+
+    // вставка-дубликат внутри транзакции оборвала бы её в PostgreSQL, поэтому строка создаётся заранее
+    public void createWatermark(String name) {
+        if (!jdbcTemplate.queryForList(FIND_WATERMARK, Long.class, name).isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_WATERMARK, name, 0L);
+        } catch (DuplicateKeyException e) {
+            // строку успел создать роллер другого экземпляра
+        }
+    }
+
+    // до конца транзакции: роллер другого экземпляра ждёт коммита и читает уже сдвинутую отметку
+    public long lockWatermark(String name) {
+        return jdbcTemplate.queryForObject(FIND_WATERMARK + " for update", Long.class, name);
+    }
+
+    public long findMaxHitId() {
+        Long id = jdbcTemplate.queryForObject("select max(id) from " + hitTable.getBaseTable(), Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public List<HitRollup> aggregateMinutes(long fromHitId, long toHitId) {
+        String sql = "select date_trunc('minute', hit_timestamp) as bucket, app, uri, sum(hit_count) as hits from "
+                + hitTable.getName() + " where id > ? and id <= ? "
+                + "group by date_trunc('minute', hit_timestamp), app, uri";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> HitRollup.builder()
+                        .bucket(rs.getTimestamp("bucket").toLocalDateTime())
+                        .app(rs.getString("app"))
+                        .uri(rs.getString("uri"))
+                        .hits(rs.getLong("hits"))
+                        .build(),
+                fromHitId, toHitId);
+    }
+
+    public void addHits(TimeBucket bucket, List<HitRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        String table = table(bucket);
+        int[][] updated = jdbcTemplate.batchUpdate(
+                "update " + table + " set hits = hits + ? where bucket = ? and app = ? and uri = ?",
+                rollups, BATCH_SIZE, (statement, rollup) -> {
+                    statement.setLong(1, rollup.getHits());
+                    statement.setTimestamp(2, Timestamp.valueOf(rollup.getBucket()));
+                    statement.setString(3, rollup.getApp());
+                    statement.setString(4, rollup.getUri());
+                });
+
+        List<HitRollup> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updated) {
+            for (int count : batch) {
+                if (count == 0) {
+                    missing.add(rollups.get(index));
+                }
+                index++;
+            }
+        }
+
+        jdbcTemplate.batchUpdate(
+                "insert into " + table + " (bucket, app, uri, hits) values (?, ?, ?, ?)",
+                missing, BATCH_SIZE, (statement, rollup) -> {
+                    statement.setTimestamp(1, Timestamp.valueOf(rollup.getBucket()));
+                    statement.setString(2, rollup.getApp());
+                    statement.setString(3, rollup.getUri());
+                    statement.setLong(4, rollup.getHits());
+                });
+    }
+
+    // бакеты плана берутся из роллапов, края диапазона и ещё не свёрнутые хиты - из сырых хитов
+    public List<ViewStats> findStats(RollupPlan plan,
+                                     LocalDateTime start,
+                                     LocalDateTime end,
+                                     String[] uris,
+                                     String watermarkName) {
+        List<Object> params = new ArrayList<>();
+        String sql = statsSql(plan, start, end, uris, watermarkName, params);
+
+        return jdbcTemplate.query(sql, ViewStatsCursor.MAPPER, params.toArray());
+    }
+
+    public void forEachStats(RollupPlan plan,
+                             LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             String watermarkName,
+                             int fetchSize,
+                             Consumer<ViewStats> consumer) {
+        List<Object> params = new ArrayList<>();
+        String sql = statsSql(plan, start, end, uris, watermarkName, params);
+
+        ViewStatsCursor.forEach(jdbcTemplate, sql, params, fetchSize, consumer);
+    }
+
+    private String statsSql(RollupPlan plan,
+                            LocalDateTime start,
+                            LocalDateTime end,
+                            String[] uris,
+                            String watermarkName,
+                            List<Object> params) {
+        StringBuilder sql = new StringBuilder("select app, uri, sum(hits) as hits from (");
+
+        for (TimeBucket bucket : TimeBucket.values()) {
+            List<RollupPlan.Segment> segments = plan.getSegments(bucket);
+            if (segments.isEmpty()) {
+                continue;
+            }
+            sql.append("select app, uri, hits from ").append(table(bucket)).append(" where (");
+            for (int i = 0; i < segments.size(); i++) {
+                if (i > 0) {
+                    sql.append(" or ");
+                }
+                sql.append("(bucket >= ? and bucket < ?)");
+                params.add(Timestamp.valueOf(segments.get(i).getFrom()));
+                params.add(Timestamp.valueOf(segments.get(i).getTo()));
+            }
+            sql.append(")");
+            UriSql.appendUriFilter(sql, params, uris);
+            sql.append(" union all ");
+        }
+
+        sql.append("select app, uri, sum(hit_count) as hits from ")
+                .append(hitTable.getName());
+        appendRawFilter(sql, params, plan, start, end, uris, watermarkName);
+        sql.append(" group by app, uri) as t group by app, uri");
+        return sql.toString();
+    }
+
+    // каждая строка роллапа и каждый сырой хит попадают ровно в один бакет гистограммы
+    public List<HitRollup> findHistogram(TimeBucket bucket,
+                                         RollupPlan plan,
+                                         LocalDateTime start,
+                                         LocalDateTime end,
+                                         String[] uris,
+                                         String watermarkName) {
+        String truncate = "date_trunc('" + bucket.name().toLowerCase() + "', ";
+        StringBuilder sql = new StringBuilder("select bucket, app, uri, sum(hits) as hits from (");
+        List<Object> params = new ArrayList<>();
+
+        for (RollupPlan.Segment segment : plan.getSegments()) {
+            sql.append("select ").append(truncate).append("bucket) as bucket, app, uri, hits from ")
+                    .append(table(segment.getBucket()))
+                    .append(" where bucket >= ? and bucket < ?");
+            params.add(Timestamp.valueOf(segment.getFrom()));
+            params.add(Timestamp.valueOf(segment.getTo()));
+            UriSql.appendUriFilter(sql, params, uris);
+            sql.append(" union all ");
+        }
+
+        sql.append("select ").append(truncate).append("hit_timestamp) as bucket, app, uri, sum(hit_count) as hits from ")
+                .append(hitTable.getName());
+        appendRawFilter(sql, params, plan, start, end, uris, watermarkName);
+        sql.append(" group by ").append(truncate).append("hit_timestamp), app, uri) as t")
+                .append(" group by bucket, app, uri order by bucket, app, uri");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> HitRollup.builder()
+                        .bucket(rs.getTimestamp("bucket").toLocalDateTime())
+                        .app(rs.getString("app"))
+                        .uri(rs.getString("uri"))
+                        .hits(rs.getLong("hits"))
+                        .build(),
+                params.toArray());
+    }
+
+    // сырые хиты вне покрытого роллапами диапазона и ещё не свёрнутые
+    private static void appendRawFilter(StringBuilder sql,
+                                        List<Object> params,
+                                        RollupPlan plan,
+                                        LocalDateTime start,
+                                        LocalDateTime end,
+                                        String[] uris,
+                                        String watermarkName) {
+        sql.append(" where hit_timestamp between ? and ?");
+        params.add(Timestamp.valueOf(start));
+        params.add(Timestamp.valueOf(end));
+        UriSql.appendUriFilter(sql, params, uris);
+        sql.append(" and (hit_timestamp < ? or hit_timestamp >= ? or id > ")
+                .append("(select coalesce(max(last_hit_id), 0) from hit_rollup_state where name = ?))");
+        params.add(Timestamp.valueOf(plan.getCoveredFrom()));
+        params.add(Timestamp.valueOf(plan.getCoveredTo()));
+        params.add(watermarkName);
+    }
+
+    public LocalDateTime findOldestBucket(TimeBucket bucket) {
+        Timestamp oldest = jdbcTemplate.queryForObject("select min(bucket) from " + table(bucket), Timestamp.class);
+        return oldest == null ? null : oldest.toLocalDateTime();
+    }
+
+    // строки тира source за [from, to), сгруппированные по бакетам target
+    public List<HitRollup> aggregateBuckets(TimeBucket source, TimeBucket target, LocalDateTime from, LocalDateTime to) {
+        String truncate = "date_trunc('" + target.name().toLowerCase() + "', bucket)";
+        String sql = "select " + truncate + " as bucket, app, uri, sum(hits) as hits from " + table(source)
+                + " where bucket >= ? and bucket < ? group by " + truncate + ", app, uri";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> HitRollup.builder()
+                        .bucket(rs.getTimestamp("bucket").toLocalDateTime())
+                        .app(rs.getString("app"))
+                        .uri(rs.getString("uri"))
+                        .hits(rs.getLong("hits"))
+                        .build(),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public int deleteBuckets(TimeBucket bucket, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("delete from " + table(bucket) + " where bucket >= ? and bucket < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    private static String table(TimeBucket bucket) {
+        switch (bucket) {
+            case MINUTE:
+                return "hit_rollups_minute";
+            case HOUR:
+                return "hit_rollups_hour";
+            case DAY:
+                return "hit_rollups_day";
+            default:
+                throw new IllegalArgumentException("no rollup table for bucket " + bucket);
+        }
+    }
+}
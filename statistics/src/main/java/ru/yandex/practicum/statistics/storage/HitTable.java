@@ -0,0 +1,23 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Component
+public class HitTable {
+    private final boolean compact;
+    // таблица с id и hit_timestamp хитов
+    private final String baseTable;
+    // реляция с колонками id, app, uri, ip, hit_timestamp; в компактном режиме - представление над словарями
+    private final String name;
+
+    @Autowired
+    public HitTable(@Value("${statistics.storage.compact:false}") boolean compact) {
+        this.compact = compact;
+        this.baseTable = compact ? "compact_hits" : "endpoint_hits";
+        this.name = compact ? "compact_hits_expanded" : "endpoint_hits";
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// id хитов раздаются в порядке вставки, а коммитятся в любом, поэтому max(id) годится в границу свёртки,
+// только пока незавершённых вставок нет. В PostgreSQL это даёт SHARE-блокировка таблицы: она ждёт все
+// транзакции со вставками, в том числе с других экземпляров, и на время чтения max(id) задерживает новые.
+// На прочих платформах (H2 в тестах) вставки этого процесса держат блокировку в памяти до коммита
+@Component
+public class HitWriteFence {
+    private static final String POSTGRESQL = "postgresql";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitTable hitTable;
+    private final HitRollupRepository hitRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean tableLock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public HitWriteFence(JdbcTemplate jdbcTemplate,
+                         HitTable hitTable,
+                         HitRollupRepository hitRollupRepository,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${spring.sql.init.platform:all}") String platform) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hitTable = hitTable;
+        this.hitRollupRepository = hitRollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.tableLock = POSTGRESQL.equals(platform);
+    }
+
+    // insert - транзакция вставки целиком, вместе с коммитом
+    public <T> T write(Supplier<T> insert) {
+        if (tableLock) {
+            return insert.get();
+        }
+        lock.readLock().lock();
+        try {
+            return insert.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // все хиты с id не больше результата уже закоммичены
+    public long findCommittedMaxHitId() {
+        if (tableLock) {
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("lock table " + hitTable.getBaseTable() + " in share mode");
+                return hitRollupRepository.findMaxHitId();
+            });
+        }
+        lock.writeLock().lock();
+        try {
+            return hitRollupRepository.findMaxHitId();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
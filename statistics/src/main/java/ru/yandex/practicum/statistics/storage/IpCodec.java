@@ -0,0 +1,147 @@
+package ru.yandex.practicum.statistics.storage;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// ip хранится 16 байтами: IPv6 как есть, IPv4 как ::ffff:a.b.c.d.
+// значение, не разобранное как ip, хранится текстом в UTF-8 с байтом-хвостом: длина такой записи никогда не 16
+public final class IpCodec {
+    public static final int LENGTH = 16;
+
+    private IpCodec() {
+    }
+
+    // одна текстовая форма адреса в обоих режимах хранения: IPv6 по RFC 5952, IPv4-mapped как IPv4;
+    // не-ip возвращается как есть
+    public static String normalize(String ip) {
+        byte[] address = parse(ip);
+        return address == null ? ip : format(address);
+    }
+
+    public static byte[] encode(String ip) {
+        byte[] address = parse(ip);
+        return address == null ? escape(ip) : address;
+    }
+
+    public static String decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("invalid ip length");
+        }
+        if (bytes.length != LENGTH) {
+            int padding = bytes[bytes.length - 1];
+            return new String(bytes, 0, bytes.length - 1 - padding, StandardCharsets.UTF_8);
+        }
+        return format(bytes);
+    }
+
+    private static byte[] parse(String ip) {
+        if (ip.indexOf(':') < 0) {
+            byte[] ipv4 = parseIpv4(ip);
+            return ipv4 == null ? null : mapIpv4(ipv4);
+        }
+        for (int i = 0; i < ip.length(); i++) {
+            if (Character.digit(ip.charAt(i), 16) < 0 && ip.charAt(i) != ':' && ip.charAt(i) != '.') {
+                return null;
+            }
+        }
+        try {
+            // литерал в скобках разбирается без обращения к DNS, неверный - сразу UnknownHostException
+            byte[] address = InetAddress.getByName("[" + ip + "]").getAddress();
+            return address.length == LENGTH ? address : mapIpv4(address);
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    // хвост - число байтов-заполнителей перед ним: текст из 15 байтов дополняется до 17
+    private static byte[] escape(String value) {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        int padding = text.length + 1 == LENGTH ? 1 : 0;
+        byte[] bytes = Arrays.copyOf(text, text.length + padding + 1);
+        bytes[bytes.length - 1] = (byte) padding;
+        return bytes;
+    }
+
+    private static String format(byte[] bytes) {
+        if (isMappedIpv4(bytes)) {
+            return (bytes[12] & 0xFF) + "." + (bytes[13] & 0xFF) + "." + (bytes[14] & 0xFF) + "." + (bytes[15] & 0xFF);
+        }
+        int[] groups = new int[8];
+        for (int i = 0; i < 8; i++) {
+            groups[i] = (bytes[2 * i] & 0xFF) << 8 | (bytes[2 * i + 1] & 0xFF);
+        }
+        // самая длинная серия нулевых групп, не короче двух, сворачивается в ::
+        int zerosFrom = -1;
+        int zerosLength = 1;
+        for (int i = 0; i < 8; i++) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > zerosLength) {
+                zerosFrom = i;
+                zerosLength = j - i;
+            }
+            i = Math.max(i, j - 1);
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            if (i == zerosFrom) {
+                text.append("::");
+                i += zerosLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(groups[i]));
+        }
+        return text.toString();
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                char c = part.charAt(j);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (value > 255) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    private static byte[] mapIpv4(byte[] ipv4) {
+        byte[] address = new byte[LENGTH];
+        address[10] = (byte) 0xFF;
+        address[11] = (byte) 0xFF;
+        System.arraycopy(ipv4, 0, address, 12, 4);
+        return address;
+    }
+
+    private static boolean isMappedIpv4(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xFF && bytes[11] == (byte) 0xFF;
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.UriFilter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// SQL собирается один раз на форму запроса: unique, число точных uri (округлённое вверх до степени двойки)
+// и число LIKE. Одинаковый текст запроса драйвер PostgreSQL после нескольких выполнений
+// готовит на сервере, и план переиспользуется; строки читаются курсором и разбираются по номерам колонок
+@Component
+public class JdbcStatsQueryEngine implements StatsQueryEngine {
+    public static final String NAME = "jdbc";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitTable hitTable;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+    private final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JdbcStatsQueryEngine(JdbcTemplate jdbcTemplate,
+                                HitTable hitTable,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${statistics.query.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hitTable = hitTable;
+        // PostgreSQL держит курсор только внутри транзакции, без неё fetchSize игнорируется
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        UriFilter filter = UriFilter.of(uris);
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.valueOf(start));
+        params.add(Timestamp.valueOf(end));
+
+        // недостающие до степени двойки места в IN занимает повтор последнего uri, на результат это не влияет
+        int exact = paddedSize(filter.getExact().size());
+        String last = null;
+        for (String uri : filter.getExact()) {
+            params.add(uri);
+            last = uri;
+        }
+        for (int i = filter.getExact().size(); i < exact; i++) {
+            params.add(last);
+        }
+        for (String prefix : filter.getPrefixes()) {
+            params.add(prefix + "%");
+        }
+        params.addAll(filter.getPatterns());
+        int likes = filter.getPrefixes().size() + filter.getPatterns().size();
+
+        String sql = statements.computeIfAbsent(unique + ":" + exact + ":" + likes, shape -> sql(unique, exact, likes));
+        return transactionTemplate.execute(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(statement);
+            return statement;
+        }, rs -> {
+            List<ViewStats> stats = new ArrayList<>();
+            while (rs.next()) {
+                stats.add(new ViewStats(rs.getString(1), rs.getString(2), rs.getLong(3)));
+            }
+            return stats;
+        }));
+    }
+
+    private String sql(boolean unique, int exact, int likes) {
+        StringBuilder sql = new StringBuilder("select app, uri, ")
+                .append(unique ? "count(distinct ip)" : "sum(hit_count)")
+                .append(" from ")
+                .append(hitTable.getName())
+                .append(" where hit_timestamp between ? and ?");
+        if (exact + likes > 0) {
+            sql.append(" and (");
+            boolean first = true;
+            if (exact > 0) {
+                sql.append("uri in (?");
+                for (int i = 1; i < exact; i++) {
+                    sql.append(", ?");
+                }
+                sql.append(")");
+                first = false;
+            }
+            for (int i = 0; i < likes; i++) {
+                sql.append(first ? "" : " or ").append("uri like ?");
+                first = false;
+            }
+            sql.append(")");
+        }
+        return sql.append(" group by app, uri").toString();
+    }
+
+    private static int paddedSize(int size) {
+        return size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+    }
+}
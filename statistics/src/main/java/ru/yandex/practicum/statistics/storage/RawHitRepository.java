@@ -0,0 +1,129 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.HitRollup;
+import ru.yandex.practicum.statistics.model.StatsKey;
+import ru.yandex.practicum.statistics.model.TimeBucket;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+@Repository
+public class RawHitRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final HitTable hitTable;
+
+    public void forEachBucketIp(TimeBucket bucket, long fromHitId, long toHitId, BiConsumer<StatsKey, String> consumer) {
+        String truncate = "date_trunc('" + bucket.name().toLowerCase() + "', hit_timestamp)";
+        String sql = "select " + truncate + " as bucket, app, uri, ip from " + hitTable.getName()
+                + " where id > ? and id <= ? group by " + truncate + ", app, uri, ip";
+
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(new StatsKey(rs.getTimestamp("bucket").toLocalDateTime(),
+                            rs.getString("app"),
+                            rs.getString("uri")),
+                    readIp(rs));
+        }, fromHitId, toHitId);
+    }
+
+    // все хиты начиная с from, курсором по fetchSize строк
+    public void forEachHit(LocalDateTime from, int fetchSize, Consumer<EndpointHit> consumer) {
+        String sql = "select app, uri, ip, hit_timestamp, hit_count from " + hitTable.getName()
+                + " where hit_timestamp >= ?";
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            return statement;
+        }, rs -> {
+            consumer.accept(EndpointHit.builder()
+                    .app(rs.getString("app"))
+                    .uri(rs.getString("uri"))
+                    .ip(readIp(rs))
+                    .timestamp(rs.getTimestamp("hit_timestamp").toLocalDateTime())
+                    .count(rs.getInt("hit_count"))
+                    .build());
+        });
+    }
+
+    // ip из краёв диапазона и ещё не свёрнутых хитов
+    public void forEachRawIp(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             LocalDateTime coveredFrom,
+                             LocalDateTime coveredTo,
+                             String watermarkName,
+                             BiConsumer<StatsKey, String> consumer) {
+        StringBuilder sql = new StringBuilder("select app, uri, ip from ")
+                .append(hitTable.getName())
+                .append(" where hit_timestamp between ? and ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(start), Timestamp.valueOf(end)));
+        UriSql.appendUriFilter(sql, params, uris);
+        sql.append(" and (hit_timestamp < ? or hit_timestamp >= ? or id > ")
+                .append("(select coalesce(max(last_hit_id), 0) from hit_rollup_state where name = ?))")
+                .append(" group by app, uri, ip");
+        params.add(Timestamp.valueOf(coveredFrom));
+        params.add(Timestamp.valueOf(coveredTo));
+        params.add(watermarkName);
+
+        jdbcTemplate.query(sql.toString(), rs -> {
+            consumer.accept(StatsKey.of(rs.getString("app"), rs.getString("uri")), readIp(rs));
+        }, params.toArray());
+    }
+
+    public void forEachStats(LocalDateTime start,
+                             LocalDateTime end,
+                             String[] uris,
+                             boolean unique,
+                             int fetchSize,
+                             Consumer<ViewStats> consumer) {
+        StringBuilder sql = new StringBuilder("select app, uri, ")
+                .append(unique ? "count(distinct ip)" : "sum(hit_count)")
+                .append(" as hits from ")
+                .append(hitTable.getName())
+                .append(" where hit_timestamp between ? and ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(start), Timestamp.valueOf(end)));
+        UriSql.appendUriFilter(sql, params, uris);
+        sql.append(" group by app, uri");
+
+        ViewStatsCursor.forEach(jdbcTemplate, sql.toString(), params, fetchSize, consumer);
+    }
+
+    public List<HitRollup> findUniqueHistogram(TimeBucket bucket, LocalDateTime start, LocalDateTime end, String[] uris) {
+        String truncate = "date_trunc('" + bucket.name().toLowerCase() + "', hit_timestamp)";
+        StringBuilder sql = new StringBuilder("select ").append(truncate)
+                .append(" as bucket, app, uri, count(distinct ip) as hits from ")
+                .append(hitTable.getName())
+                .append(" where hit_timestamp between ? and ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(start), Timestamp.valueOf(end)));
+        UriSql.appendUriFilter(sql, params, uris);
+        sql.append(" group by ").append(truncate).append(", app, uri order by bucket, app, uri");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> HitRollup.builder()
+                        .bucket(rs.getTimestamp("bucket").toLocalDateTime())
+                        .app(rs.getString("app"))
+                        .uri(rs.getString("uri"))
+                        .hits(rs.getLong("hits"))
+                        .build(),
+                params.toArray());
+    }
+
+    // в компактном режиме ip приводится к той же строковой форме, в которой его присылают клиенты
+    private String readIp(ResultSet rs) throws SQLException {
+        return hitTable.isCompact() ? IpCodec.decode(rs.getBytes("ip")) : rs.getString("ip");
+    }
+}
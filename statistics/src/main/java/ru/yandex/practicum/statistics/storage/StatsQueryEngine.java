@@ -0,0 +1,13 @@
+package ru.yandex.practicum.statistics.storage;
+
+import ru.yandex.practicum.statistics.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// /stats по сырым хитам, когда ни роллапы, ни скетчи, ни битмапы запрос не покрывают
+public interface StatsQueryEngine {
+    String getName();
+
+    List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique);
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.statistics.storage;
+
+import ru.yandex.practicum.statistics.model.UriFilter;
+
+import java.util.List;
+
+public final class UriSql {
+    private UriSql() {
+    }
+
+    public static void appendUriFilter(StringBuilder sql, List<Object> params, String[] uris) {
+        appendUriFilter(sql, params, UriFilter.of(uris));
+    }
+
+    // точные uri идут одним IN, префиксы - LIKE 'prefix%', который индекс по uri отдаёт диапазоном
+    public static void appendUriFilter(StringBuilder sql, List<Object> params, UriFilter filter) {
+        if (filter.isEmpty()) {
+            return;
+        }
+        sql.append(" and (");
+        boolean first = true;
+        if (!filter.getExact().isEmpty()) {
+            sql.append("uri in (");
+            for (String uri : filter.getExact()) {
+                sql.append(first ? "?" : ", ?");
+                params.add(uri);
+                first = false;
+            }
+            sql.append(")");
+        }
+        for (String prefix : filter.getPrefixes()) {
+            sql.append(first ? "" : " or ").append("uri like ?");
+            params.add(prefix + "%");
+            first = false;
+        }
+        for (String pattern : filter.getPatterns()) {
+            sql.append(first ? "" : " or ").append("uri like ?");
+            params.add(pattern);
+            first = false;
+        }
+        sql.append(")");
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+// строки отдаются по мере чтения; PostgreSQL держит курсор только внутри транзакции, без неё fetchSize игнорируется
+public final class ViewStatsCursor {
+    public static final RowMapper<ViewStats> MAPPER = (rs, rowNum) -> ViewStats.builder()
+            .app(rs.getString("app"))
+            .uri(rs.getString("uri"))
+            .hits(rs.getLong("hits"))
+            .build();
+
+    private ViewStatsCursor() {
+    }
+
+    public static void forEach(JdbcTemplate jdbcTemplate,
+                               String sql,
+                               List<Object> params,
+                               int fetchSize,
+                               Consumer<ViewStats> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(params.toArray()).setValues(statement);
+            return statement;
+        }, rs -> {
+            consumer.accept(MAPPER.mapRow(rs, 0));
+        });
+    }
+}
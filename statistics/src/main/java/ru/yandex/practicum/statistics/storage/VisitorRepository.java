@@ -0,0 +1,42 @@
+package ru.yandex.practicum.statistics.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+@Repository
+public class VisitorRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final String INSERT_VISITOR = "insert into visitors (ip) values (?)";
+
+    public Map<String, Integer> findIds(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> all = new ArrayList<>(ips);
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            List<String> chunk = all.subList(from, Math.min(all.size(), from + CHUNK_SIZE));
+            String placeholders = chunk.stream()
+                    .map(ip -> "?")
+                    .collect(Collectors.joining(", "));
+
+            jdbcTemplate.query("select id, ip from visitors where ip in (" + placeholders + ")",
+                    rs -> {
+                        ids.put(rs.getString("ip"), rs.getInt("id"));
+                    }, chunk.toArray());
+        }
+        return ids;
+    }
+
+    public void saveAll(Collection<String> ips) {
+        jdbcTemplate.batchUpdate(INSERT_VISITOR, ips, CHUNK_SIZE, (statement, ip) -> statement.setString(1, ip));
+    }
+}
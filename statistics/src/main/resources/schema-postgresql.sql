@@ -0,0 +1,20 @@
+-- таблица совместима с созданной до секционирования; с statistics.partitioning.enabled=true
+-- HitPartitionService при старте переводит её в секционированную, см. HitPartitionRepository
+CREATE TABLE IF NOT EXISTS endpoint_hits
+(
+    id            BIGINT        NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    app           VARCHAR(100)  NOT NULL,
+    uri           VARCHAR(2000) NOT NULL,
+    ip            VARCHAR(40)   NOT NULL,
+    hit_timestamp TIMESTAMP     NOT NULL,
+    hit_count     INTEGER       NOT NULL DEFAULT 1,
+    CONSTRAINT pk_hit PRIMARY KEY (id)
+);
+
+-- схлопнутые при приёме повторы; для баз, созданных до появления столбца
+ALTER TABLE endpoint_hits ADD COLUMN IF NOT EXISTS hit_count INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS idx_hit_timestamp ON endpoint_hits (hit_timestamp);
+
+-- varchar_pattern_ops отдаёт uri like 'prefix%' диапазоном по индексу и обслуживает точное сравнение
+CREATE INDEX IF NOT EXISTS idx_hit_uri ON endpoint_hits (uri varchar_pattern_ops, hit_timestamp);
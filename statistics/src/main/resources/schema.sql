@@ -1,9 +1,113 @@
-CREATE TABLE IF NOT EXISTS endpoint_hits
-(
-    id            BIGINT        NOT NULL GENERATED BY DEFAULT AS IDENTITY,
-    app           VARCHAR(100)  NOT NULL,
-    uri           VARCHAR(2000) NOT NULL,
-    ip            VARCHAR(40)   NOT NULL,
-    hit_timestamp TIMESTAMP     NOT NULL,
-    CONSTRAINT pk_hit PRIMARY KEY (id)
-);
\ No newline at end of file
+CREATE TABLE IF NOT EXISTS hit_rollups_minute
+(
+    bucket TIMESTAMP     NOT NULL,
+    app    VARCHAR(100)  NOT NULL,
+    uri    VARCHAR(2000) NOT NULL,
+    hits   BIGINT        NOT NULL,
+    CONSTRAINT pk_hit_rollup_minute PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollups_hour
+(
+    bucket TIMESTAMP     NOT NULL,
+    app    VARCHAR(100)  NOT NULL,
+    uri    VARCHAR(2000) NOT NULL,
+    hits   BIGINT        NOT NULL,
+    CONSTRAINT pk_hit_rollup_hour PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollups_day
+(
+    bucket TIMESTAMP     NOT NULL,
+    app    VARCHAR(100)  NOT NULL,
+    uri    VARCHAR(2000) NOT NULL,
+    hits   BIGINT        NOT NULL,
+    CONSTRAINT pk_hit_rollup_day PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_rollup_state
+(
+    name        VARCHAR(50) NOT NULL,
+    last_hit_id BIGINT      NOT NULL,
+    CONSTRAINT pk_hit_rollup_state PRIMARY KEY (name)
+);
+
+CREATE TABLE IF NOT EXISTS hit_count_changes
+(
+    position   BIGINT        NOT NULL,
+    app        VARCHAR(100)  NOT NULL,
+    uri        VARCHAR(2000) NOT NULL,
+    hits       BIGINT        NOT NULL,
+    created_at TIMESTAMP     NOT NULL,
+    CONSTRAINT pk_hit_count_change PRIMARY KEY (position, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_retention_state
+(
+    tier           VARCHAR(20) NOT NULL,
+    available_from TIMESTAMP   NOT NULL,
+    CONSTRAINT pk_hit_retention_state PRIMARY KEY (tier)
+);
+
+CREATE TABLE IF NOT EXISTS hit_sketches_hour
+(
+    bucket TIMESTAMP     NOT NULL,
+    app    VARCHAR(100)  NOT NULL,
+    uri    VARCHAR(2000) NOT NULL,
+    sketch BYTEA         NOT NULL,
+    CONSTRAINT pk_hit_sketch_hour PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS visitors
+(
+    id INTEGER     NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    ip VARCHAR(40) NOT NULL,
+    CONSTRAINT pk_visitor PRIMARY KEY (id),
+    CONSTRAINT uq_visitor_ip UNIQUE (ip)
+);
+
+CREATE TABLE IF NOT EXISTS visitor_bitmaps_day
+(
+    bucket TIMESTAMP     NOT NULL,
+    app    VARCHAR(100)  NOT NULL,
+    uri    VARCHAR(2000) NOT NULL,
+    bitmap BYTEA         NOT NULL,
+    CONSTRAINT pk_visitor_bitmap_day PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS hit_apps
+(
+    id   SMALLINT     NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    name VARCHAR(100) NOT NULL,
+    CONSTRAINT pk_hit_app PRIMARY KEY (id),
+    CONSTRAINT uq_hit_app_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS hit_uris
+(
+    id  INTEGER       NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    uri VARCHAR(2000) NOT NULL,
+    CONSTRAINT pk_hit_uri PRIMARY KEY (id),
+    CONSTRAINT uq_hit_uri UNIQUE (uri)
+);
+
+CREATE TABLE IF NOT EXISTS compact_hits
+(
+    id            BIGINT    NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    app_id        SMALLINT  NOT NULL,
+    uri_id        INTEGER   NOT NULL,
+    ip            BYTEA     NOT NULL,
+    hit_timestamp TIMESTAMP NOT NULL,
+    hit_count     INTEGER   NOT NULL DEFAULT 1,
+    CONSTRAINT pk_compact_hit PRIMARY KEY (id)
+);
+
+ALTER TABLE compact_hits ADD COLUMN IF NOT EXISTS hit_count INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS idx_compact_hit_timestamp ON compact_hits (hit_timestamp, uri_id);
+
+CREATE OR REPLACE VIEW compact_hits_expanded AS
+SELECT h.id, a.name AS app, u.uri, h.ip, h.hit_timestamp, h.hit_count
+FROM compact_hits AS h
+         JOIN hit_apps AS a ON a.id = h.app_id
+         JOIN hit_uris AS u ON u.id = h.uri_id;
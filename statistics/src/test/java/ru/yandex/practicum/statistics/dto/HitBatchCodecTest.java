@@ -0,0 +1,149 @@
+package ru.yandex.practicum.statistics.dto;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HitBatchCodecTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 30, 15);
+    private static final long MILLIS = TIMESTAMP.toInstant(ZoneOffset.UTC).toEpochMilli() + 250;
+
+    @Test
+    void decodesVersion1WithDictionaryToWholeSeconds() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(1);
+        writeVarLong(body, 1);
+        writeString(body, "ewm-main-service");
+        writeVarLong(body, 2);
+        for (String uri : List.of("/events/1", "/events/2")) {
+            writeVarLong(body, 1);
+            writeVarLong(body, 0);
+            writeString(body, uri);
+            writeString(body, "192.168.0.1");
+            writeVarLong(body, MILLIS);
+        }
+
+        List<EndpointHit> hits = HitBatchCodec.decode(body.toByteArray(), 10);
+
+        assertThat(hits)
+                .extracting(EndpointHit::getApp, EndpointHit::getUri, EndpointHit::getIp, EndpointHit::getTimestamp,
+                        EndpointHit::getCount)
+                .containsExactly(
+                        tuple("ewm-main-service", "/events/1", "192.168.0.1", TIMESTAMP, 1),
+                        tuple("ewm-main-service", "/events/2", "192.168.0.1", TIMESTAMP, 1));
+    }
+
+    @Test
+    void roundTripsCountedBatch() {
+        List<EndpointHit> hits = List.of(
+                hit("/events/1", "10.0.0.1", 1),
+                hit("/events/1", "10.0.0.2", 5),
+                hit("/events/2", "::1", 300));
+
+        List<EndpointHit> decoded = HitBatchCodec.decodeCounted(HitBatchCodec.encodeCounted(hits));
+
+        assertThat(decoded)
+                .extracting(EndpointHit::getApp, EndpointHit::getUri, EndpointHit::getIp, EndpointHit::getTimestamp,
+                        EndpointHit::getCount)
+                .containsExactly(
+                        tuple("ewm-main-service", "/events/1", "10.0.0.1", TIMESTAMP, 1),
+                        tuple("ewm-main-service", "/events/1", "10.0.0.2", TIMESTAMP, 5),
+                        tuple("ewm-main-service", "/events/2", "::1", TIMESTAMP, 300));
+    }
+
+    @Test
+    void rejectsCountedBatchOverHttp() {
+        byte[] body = HitBatchCodec.encodeCounted(List.of(hit("/events/1", "10.0.0.1", 2)));
+
+        assertThatThrownBy(() -> HitBatchCodec.decode(body, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void rejectsTruncatedAndTrailingBytes() {
+        byte[] body = HitBatchCodec.encodeCounted(List.of(hit("/events/1", "10.0.0.1", 2)));
+
+        assertThatThrownBy(() -> HitBatchCodec.decodeCounted(Arrays.copyOf(body, body.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HitBatchCodec.decodeCounted(Arrays.copyOf(body, body.length + 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("trailing");
+    }
+
+    @Test
+    void rejectsBatchAboveMaxHits() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(1);
+        writeVarLong(body, 0);
+        writeVarLong(body, 3);
+
+        assertThatThrownBy(() -> HitBatchCodec.decode(body.toByteArray(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsBlankAndOverlongFieldsOverHttp() {
+        assertThatThrownBy(() -> HitBatchCodec.decode(singleHit("ewm-main-service", " ", "10.0.0.1"), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("blank uri");
+        assertThatThrownBy(() -> HitBatchCodec.decode(singleHit("a".repeat(101), "/events/1", "10.0.0.1"), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("app");
+        assertThatThrownBy(() -> HitBatchCodec.decode(singleHit("ewm-main-service", "/" + "e".repeat(2000), "10.0.0.1"), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("uri");
+        assertThatThrownBy(() -> HitBatchCodec.decode(singleHit("ewm-main-service", "/events/1", "1".repeat(41)), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ip");
+        assertThat(HitBatchCodec.decode(singleHit("a".repeat(100), "/events/1", "10.0.0.1"), 10)).hasSize(1);
+    }
+
+    private static byte[] singleHit(String app, String uri, String ip) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(1);
+        writeVarLong(body, 0);
+        writeVarLong(body, 1);
+        writeVarLong(body, 0);
+        writeString(body, app);
+        writeVarLong(body, 0);
+        writeString(body, uri);
+        writeString(body, ip);
+        writeVarLong(body, MILLIS);
+        return body.toByteArray();
+    }
+
+    private static EndpointHit hit(String uri, String ip, int count) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(TIMESTAMP)
+                .count(count)
+                .build();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.statistics.model;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.statistics.exceptions.BadRequestException;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetentionBoundariesTest {
+    private static final LocalDateTime HOUR_FROM = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final LocalDateTime RAW_FROM = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private final RetentionBoundaries boundaries = new RetentionBoundaries(RAW_FROM, HOUR_FROM);
+
+    @Test
+    void acceptsAnyRangeWhereRawHitsAreKept() {
+        assertThatCode(() -> boundaries.requireAligned(RAW_FROM.plusMinutes(7).plusSeconds(3), RAW_FROM.plusDays(1)))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void requiresHourBoundariesWhereOnlyHourlyRollupsAreKept() {
+        LocalDateTime hour = LocalDateTime.of(2024, 2, 10, 10, 0);
+
+        assertThatCode(() -> boundaries.requireAligned(hour, hour.plusMinutes(59).plusSeconds(59)))
+                .doesNotThrowAnyException();
+        assertThatThrownBy(() -> boundaries.requireAligned(hour.plusMinutes(30), RAW_FROM.plusHours(1)))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("start 2024-02-10 10:30:00")
+                .hasMessageContaining("use 2024-02-10 10:00:00");
+        assertThatThrownBy(() -> boundaries.requireAligned(hour, hour.plusMinutes(30)))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("use 2024-02-10 10:59:59");
+    }
+
+    @Test
+    void requiresDayBoundariesWhereOnlyDailyRollupsAreKept() {
+        LocalDateTime day = LocalDateTime.of(2024, 1, 10, 0, 0);
+
+        assertThatCode(() -> boundaries.requireAligned(day, day.plusDays(1).minusSeconds(1)))
+                .doesNotThrowAnyException();
+        assertThatCode(() -> boundaries.requireAligned(day, RAW_FROM.plusMinutes(5)))
+                .doesNotThrowAnyException();
+        assertThatThrownBy(() -> boundaries.requireAligned(day.plusHours(10), RAW_FROM))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("use 2024-01-10 00:00:00");
+        assertThatThrownBy(() -> boundaries.requireAligned(day, day.plusHours(10).minusSeconds(1)))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("use 2024-01-10 23:59:59");
+    }
+
+    @Test
+    void requiresTierBoundariesBeforeRawHitsForSingleTierAggregates() {
+        LocalDateTime hour = LocalDateTime.of(2024, 2, 10, 10, 0);
+
+        assertThatCode(() -> boundaries.requireAligned(hour, hour.plusMinutes(59).plusSeconds(59), TimeBucket.HOUR))
+                .doesNotThrowAnyException();
+        assertThatThrownBy(() -> boundaries.requireAligned(hour, RAW_FROM, TimeBucket.DAY))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("use 2024-02-10 00:00:00");
+        assertThatCode(() -> boundaries.requireAligned(RAW_FROM.plusMinutes(1), RAW_FROM.plusMinutes(2), TimeBucket.DAY))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void reportsWhereEachBucketSizeIsAvailable() {
+        assertThat(boundaries.getAvailableFrom(TimeBucket.MINUTE)).isEqualTo(RAW_FROM);
+        assertThat(boundaries.getAvailableFrom(TimeBucket.HOUR)).isEqualTo(HOUR_FROM);
+        assertThat(boundaries.getAvailableFrom(TimeBucket.DAY)).isEqualTo(RetentionBoundaries.UNBOUNDED);
+    }
+}
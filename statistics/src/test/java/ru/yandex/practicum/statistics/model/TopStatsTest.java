@@ -0,0 +1,53 @@
+package ru.yandex.practicum.statistics.model;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TopStatsTest {
+
+    @Test
+    void keepsMostVisitedInDescendingOrder() {
+        TopStats top = new TopStats(3);
+        IntStream.of(5, 1, 9, 3, 7, 2).forEach(hits -> top.accept(stats("app", "/events/" + hits, hits)));
+
+        assertThat(top.toList())
+                .extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/9", 9L), tuple("/events/7", 7L), tuple("/events/5", 5L));
+    }
+
+    @Test
+    void breaksTiesByAppThenUri() {
+        TopStats top = new TopStats(2);
+        top.accept(stats("b", "/events/1", 10));
+        top.accept(stats("a", "/events/2", 10));
+        top.accept(stats("a", "/events/1", 10));
+
+        assertThat(top.toList())
+                .extracting(ViewStats::getApp, ViewStats::getUri)
+                .containsExactly(tuple("a", "/events/1"), tuple("a", "/events/2"));
+    }
+
+    @Test
+    void returnsEverythingBelowLimit() {
+        TopStats top = new TopStats(10);
+        top.accept(stats("app", "/events/1", 1));
+        top.accept(stats("app", "/events/2", 2));
+
+        assertThat(top.toList())
+                .extracting(ViewStats::getHits)
+                .containsExactly(2L, 1L);
+    }
+
+    private static ViewStats stats(String app, String uri, long hits) {
+        return ViewStats.builder()
+                .app(app)
+                .uri(uri)
+                .hits(hits)
+                .build();
+    }
+}
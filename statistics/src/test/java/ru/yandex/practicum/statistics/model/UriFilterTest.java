@@ -0,0 +1,64 @@
+package ru.yandex.practicum.statistics.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriFilterTest {
+
+    @Test
+    void splitsUrisByLookupKind() {
+        UriFilter filter = UriFilter.of(new String[]{"/events/1", "/events/*", "/events/_/comments", "/a\\_b"});
+
+        assertThat(filter.getExact()).containsExactly("/events/1");
+        assertThat(filter.getPrefixes()).containsExactly("/events/");
+        assertThat(filter.getPatterns()).containsExactly("/events/_/comments", "/a\\_b");
+    }
+
+    @Test
+    void emptyFilterMatchesEverything() {
+        assertThat(UriFilter.of(null).isEmpty()).isTrue();
+        assertThat(UriFilter.of(null).matches("/events/1")).isTrue();
+        assertThat(UriFilter.of(new String[0]).matches("/events/1")).isTrue();
+    }
+
+    @Test
+    void matchesExactValuesWithoutSubstringSearch() {
+        UriFilter filter = UriFilter.of(new String[]{"/events/1"});
+
+        assertThat(filter.matches("/events/1")).isTrue();
+        assertThat(filter.matches("/events/10")).isFalse();
+        assertThat(filter.matches("/EVENTS/1")).isFalse();
+    }
+
+    @Test
+    void matchesPrefixesAndLikePatterns() {
+        UriFilter filter = UriFilter.of(new String[]{"/events/%", "%/comments", "/users/_"});
+
+        assertThat(filter.matches("/events/")).isTrue();
+        assertThat(filter.matches("/events/42")).isTrue();
+        assertThat(filter.matches("/events")).isFalse();
+        assertThat(filter.matches("/posts/7/comments")).isTrue();
+        assertThat(filter.matches("/posts/7/comments/1")).isFalse();
+        assertThat(filter.matches("/users/7")).isTrue();
+        assertThat(filter.matches("/users/77")).isFalse();
+    }
+
+    @Test
+    void backtracksToLastPercent() {
+        UriFilter filter = UriFilter.of(new String[]{"/a%b%c"});
+
+        assertThat(filter.matches("/abxbyc")).isTrue();
+        assertThat(filter.matches("/abxcyb")).isFalse();
+    }
+
+    @Test
+    void treatsEscapedWildcardsLiterally() {
+        UriFilter filter = UriFilter.of(new String[]{"/a\\_b", "/p\\%%"});
+
+        assertThat(filter.matches("/a_b")).isTrue();
+        assertThat(filter.matches("/axb")).isFalse();
+        assertThat(filter.matches("/p%x")).isTrue();
+        assertThat(filter.matches("/px")).isFalse();
+    }
+}
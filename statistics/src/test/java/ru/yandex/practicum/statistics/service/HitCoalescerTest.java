@@ -0,0 +1,67 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HitCoalescerTest {
+    private static final LocalDateTime SECOND = LocalDateTime.of(2024, 1, 1, 12, 0, 0);
+
+    @Test
+    void mergesRepeatsWithinOneSecond() {
+        EndpointHit first = hit("/events/1", "10.0.0.1", SECOND, 1);
+
+        List<EndpointHit> rows = HitCoalescer.coalesce(List.of(
+                first,
+                hit("/events/2", "10.0.0.1", SECOND, 1),
+                hit("/events/1", "10.0.0.1", SECOND.plusNanos(900_000_000), 2),
+                hit("/events/1", "10.0.0.2", SECOND, 1),
+                hit("/events/1", "10.0.0.1", SECOND.plusSeconds(1), 1)));
+
+        assertThat(rows)
+                .extracting(EndpointHit::getUri, EndpointHit::getIp, EndpointHit::getTimestamp, EndpointHit::getCount)
+                .containsExactly(
+                        tuple("/events/1", "10.0.0.1", SECOND, 3),
+                        tuple("/events/2", "10.0.0.1", SECOND, 1),
+                        tuple("/events/1", "10.0.0.2", SECOND, 1),
+                        tuple("/events/1", "10.0.0.1", SECOND.plusSeconds(1), 1));
+        assertThat(first.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void buffersAcrossBatchesUntilDrained() {
+        HitCoalescer coalescer = new HitCoalescer(true, 100);
+
+        coalescer.add(List.of(hit("/events/1", "10.0.0.1", SECOND, 1)));
+        coalescer.add(List.of(hit("/events/1", "10.0.0.1", SECOND, 4)));
+
+        assertThat(coalescer.drain())
+                .extracting(EndpointHit::getCount)
+                .containsExactly(5);
+        assertThat(coalescer.drain()).isEmpty();
+    }
+
+    @Test
+    void asksForFlushWhenBufferIsFull() {
+        HitCoalescer coalescer = new HitCoalescer(true, 2);
+
+        assertThat(coalescer.add(List.of(hit("/events/1", "10.0.0.1", SECOND, 1)))).isFalse();
+        assertThat(coalescer.add(List.of(hit("/events/1", "10.0.0.1", SECOND, 1)))).isFalse();
+        assertThat(coalescer.add(List.of(hit("/events/2", "10.0.0.1", SECOND, 1)))).isTrue();
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp, int count) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.statistics.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.storage.HitTable;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// роллер сворачивает, пока пишутся хиты: ни один хит не должен потеряться или посчитаться дважды
+@SpringBootTest(properties = {
+        "statistics.rollup.interval-ms=3600000",
+        "statistics.rollup.chunk-size=100",
+        "statistics.cache.enabled=false"
+})
+@ActiveProfiles("test")
+class HitRollupConcurrencyTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int WRITERS = 4;
+    private static final int BATCHES = 50;
+    private static final int BATCH_SIZE = 20;
+
+    @Autowired
+    private EndpointHitService endpointHitService;
+    @Autowired
+    private HitRollupScheduler hitRollupScheduler;
+    @Autowired
+    private HitRollupService hitRollupService;
+    @Autowired
+    private HitTable hitTable;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rollupsMatchRawHitsUnderConcurrentInserts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<?> roller = executor.submit(() -> {
+                while (writing.get()) {
+                    hitRollupScheduler.roll();
+                }
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                writers.add(executor.submit(this::writeHits));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            roller.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        hitRollupScheduler.roll();
+
+        Map<String, Long> rolledUp = new HashMap<>();
+        for (ViewStats stats : hitRollupService.getStats(DAY, DAY.plusDays(1).minusSeconds(1), null)) {
+            rolledUp.put(stats.getApp() + stats.getUri(), stats.getHits());
+        }
+        Map<String, Long> raw = new HashMap<>();
+        jdbcTemplate.query("select app, uri, sum(hit_count) as hits from " + hitTable.getName()
+                        + " where hit_timestamp between ? and ? group by app, uri",
+                (RowCallbackHandler) rs -> raw.put(rs.getString("app") + rs.getString("uri"), rs.getLong("hits")),
+                Timestamp.valueOf(DAY), Timestamp.valueOf(DAY.plusDays(1).minusSeconds(1)));
+
+        assertThat(raw).isNotEmpty();
+        assertThat(rolledUp).isEqualTo(raw);
+    }
+
+    private void writeHits() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            List<EndpointHit> hits = new ArrayList<>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                hits.add(EndpointHit.builder()
+                        .app("ewm-main-service")
+                        .uri("/events/" + random.nextInt(10))
+                        .ip("10.0.0." + random.nextInt(256))
+                        .timestamp(DAY.plusSeconds(random.nextInt(86400)))
+                        .build());
+            }
+            endpointHitService.saveHits(hits);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.statistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.statistics.dto.ViewStats;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+import ru.yandex.practicum.statistics.model.StatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsResultCacheTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final StatsQuery QUERY = new StatsQuery(DAY, DAY.plusDays(1).minusSeconds(1), List.of(), false, false);
+
+    private final StatsResultCache cache = new StatsResultCache(true, 10, 10, new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void servesRepeatedQueriesFromCache() {
+        cache.get(QUERY, loader(5));
+        List<ViewStats> stats = cache.get(QUERY, loader(7));
+
+        assertThat(loads).hasValue(1);
+        assertThat(stats).extracting(ViewStats::getHits).containsExactly(5L);
+    }
+
+    @Test
+    void evictsEntriesCoveringLateHits() {
+        cache.get(QUERY, loader(5));
+
+        cache.onHits(List.of(hit(DAY.plusHours(12))));
+
+        assertThat(cache.get(QUERY, loader(6))).extracting(ViewStats::getHits).containsExactly(6L);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void keepsEntriesOutsideLateHits() {
+        cache.get(QUERY, loader(5));
+
+        cache.onHits(List.of(hit(DAY.plusDays(1)), hit(DAY.minusSeconds(1)), hit(LocalDateTime.now())));
+
+        assertThat(cache.get(QUERY, loader(6))).extracting(ViewStats::getHits).containsExactly(5L);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictsOnRangeBoundaries() {
+        StatsQuery second = new StatsQuery(DAY.plusDays(1), DAY.plusDays(2).minusSeconds(1), List.of(), false, false);
+        cache.get(QUERY, loader(5));
+        cache.get(second, loader(5));
+
+        cache.onHits(List.of(hit(DAY.plusDays(1).minusSeconds(1))));
+
+        cache.get(QUERY, loader(6));
+        cache.get(second, loader(6));
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void doesNotCacheResultLoadedAcrossEviction() {
+        cache.get(QUERY, () -> {
+            cache.onHits(List.of(hit(DAY.plusHours(1))));
+            return loader(5).get();
+        });
+
+        cache.get(QUERY, loader(6));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidateAllDropsEverything() {
+        cache.get(QUERY, loader(5));
+
+        cache.invalidateAll();
+        cache.get(QUERY, loader(6));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private Supplier<List<ViewStats>> loader(long hits) {
+        return () -> {
+            loads.incrementAndGet();
+            return List.of(ViewStats.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/1")
+                    .hits(hits)
+                    .build());
+        };
+    }
+
+    private static EndpointHit hit(LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("10.0.0.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}
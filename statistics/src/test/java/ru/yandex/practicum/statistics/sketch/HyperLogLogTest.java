@@ -0,0 +1,83 @@
+package ru.yandex.practicum.statistics.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    private static final int DENSE_BYTES = 4097;
+
+    @Test
+    void estimatesSmallCardinalityExactlyAndIgnoresRepeats() {
+        HyperLogLog sketch = sketchOf(0, 50);
+        for (int i = 0; i < 50; i++) {
+            sketch.add("10.0.0." + i);
+        }
+
+        assertThat(sketch.estimate()).isEqualTo(50);
+    }
+
+    @Test
+    void estimatesLargeCardinalityWithinError() {
+        HyperLogLog sketch = sketchOf(0, 100_000);
+
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(5_000.0));
+    }
+
+    @Test
+    void keepsFewVisitorsSparse() {
+        byte[] bytes = sketchOf(0, 10).toBytes();
+
+        assertThat(bytes.length).isLessThanOrEqualTo(1 + 10 * 3);
+        assertThat(HyperLogLog.fromBytes(bytes).estimate()).isEqualTo(10);
+    }
+
+    @Test
+    void promotesToDenseWhenFilled() {
+        HyperLogLog sketch = sketchOf(0, 20_000);
+
+        byte[] bytes = sketch.toBytes();
+
+        assertThat(bytes).hasSize(DENSE_BYTES);
+        assertThat(HyperLogLog.fromBytes(bytes).estimate()).isEqualTo(sketch.estimate());
+    }
+
+    @Test
+    void mergesSparseAndDenseSketches() {
+        long expected = sketchOf(0, 20_010).estimate();
+
+        HyperLogLog sparseIntoDense = sketchOf(0, 20_000).merge(sketchOf(19_990, 20_010));
+        HyperLogLog denseIntoSparse = sketchOf(19_990, 20_010).merge(sketchOf(0, 20_000));
+        HyperLogLog sparseIntoSparse = sketchOf(0, 30).merge(sketchOf(20, 60));
+
+        assertThat(sparseIntoDense.estimate()).isEqualTo(expected);
+        assertThat(denseIntoSparse.estimate()).isEqualTo(expected);
+        assertThat(sparseIntoSparse.estimate()).isEqualTo(sketchOf(0, 60).estimate());
+    }
+
+    @Test
+    void promotesWhenSparseMergeOverflows() {
+        HyperLogLog merged = sketchOf(0, 800).merge(sketchOf(800, 1_600));
+
+        assertThat(merged.toBytes()).hasSize(DENSE_BYTES);
+        assertThat(merged.estimate()).isEqualTo(sketchOf(0, 1_600).estimate());
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{1, 2, 3}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add("10." + (i >> 16) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+        }
+        return sketch;
+    }
+}
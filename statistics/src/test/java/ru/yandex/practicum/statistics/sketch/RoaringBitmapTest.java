@@ -0,0 +1,69 @@
+package ru.yandex.practicum.statistics.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoaringBitmapTest {
+
+    @Test
+    void countsDistinctValuesAcrossContainers() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(1);
+        bitmap.add(1);
+        bitmap.add(70_000);
+        bitmap.add(Integer.MAX_VALUE);
+
+        assertThat(bitmap.getCardinality()).isEqualTo(3);
+    }
+
+    @Test
+    void switchesToBitmapContainerPastArrayLimit() {
+        RoaringBitmap bitmap = rangeOf(0, 10_000);
+        bitmap.add(5_000);
+
+        assertThat(bitmap.getCardinality()).isEqualTo(10_000);
+        assertThat(RoaringBitmap.fromBytes(bitmap.toBytes()).getCardinality()).isEqualTo(10_000);
+    }
+
+    @Test
+    void roundTripsArrayAndBitmapContainers() {
+        RoaringBitmap bitmap = rangeOf(0, 5_000);
+        bitmap.or(rangeOf(1 << 16, (1 << 16) + 100));
+
+        RoaringBitmap restored = RoaringBitmap.fromBytes(bitmap.toBytes());
+        restored.add(10);
+        restored.add((1 << 16) + 100);
+
+        assertThat(restored.getCardinality()).isEqualTo(5_101);
+    }
+
+    @Test
+    void unionsMixedContainersWithoutDoubleCounting() {
+        RoaringBitmap arrays = rangeOf(0, 3_000).or(rangeOf(2_000, 4_000));
+        RoaringBitmap arrayIntoBitmap = rangeOf(0, 5_000).or(rangeOf(4_500, 6_000));
+        RoaringBitmap bitmapIntoArray = rangeOf(4_500, 6_000).or(rangeOf(0, 5_000));
+
+        assertThat(arrays.getCardinality()).isEqualTo(4_000);
+        assertThat(arrayIntoBitmap.getCardinality()).isEqualTo(6_000);
+        assertThat(bitmapIntoArray.getCardinality()).isEqualTo(6_000);
+    }
+
+    @Test
+    void orDoesNotShareContainersWithSource() {
+        RoaringBitmap source = rangeOf(0, 10);
+        RoaringBitmap target = new RoaringBitmap().or(source);
+        target.add(100);
+
+        assertThat(source.getCardinality()).isEqualTo(10);
+        assertThat(target.getCardinality()).isEqualTo(11);
+    }
+
+    private static RoaringBitmap rangeOf(int from, int to) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = from; i < to; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.statistics.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.statistics.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HitCommitLogTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    private final HitRollupRepository hitRollupRepository = mock(HitRollupRepository.class);
+
+    @Test
+    void readsAppendedHitsInOrder() {
+        HitCommitLog commitLog = open();
+        commitLog.append(List.of(hit("/events/1", 1), hit("/events/2", 3)));
+        commitLog.append(List.of(hit("/events/3", 1)));
+
+        HitCommitLog.Batch batch = commitLog.read(0, 100);
+
+        assertThat(batch.getHits())
+                .extracting(EndpointHit::getUri, EndpointHit::getCount)
+                .containsExactly(tuple("/events/1", 1), tuple("/events/2", 3), tuple("/events/3", 1));
+        assertThat(commitLog.read(batch.getNextOffset(), 100).getHits()).isEmpty();
+    }
+
+    @Test
+    void recoversUnindexedHitsAfterRestart() {
+        HitCommitLog first = open();
+        first.append(List.of(hit("/events/1", 1)));
+        first.append(List.of(hit("/events/2", 1)));
+        long indexed = first.read(0, 1).getNextOffset();
+        first.close();
+        when(hitRollupRepository.findWatermark(HitCommitLog.INDEXED_WATERMARK)).thenReturn(indexed);
+
+        HitCommitLog second = open();
+        second.append(List.of(hit("/events/3", 1)));
+
+        assertThat(second.getIndexedOffset()).isEqualTo(indexed);
+        assertThat(second.read(indexed, 100).getHits())
+                .extracting(EndpointHit::getUri)
+                .containsExactly("/events/2", "/events/3");
+    }
+
+    @Test
+    void dropsTornTailOnRecovery() throws IOException {
+        HitCommitLog first = open();
+        first.append(List.of(hit("/events/1", 1)));
+        long end = first.read(0, 100).getNextOffset();
+        first.close();
+        // запись, оборванная при падении: длина уже на диске, crc с данными не сходится
+        try (FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", 0)),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(12);
+            torn.putInt(100).putInt(12345).putInt(7).flip();
+            channel.write(torn, end);
+        }
+
+        HitCommitLog second = open();
+        second.append(List.of(hit("/events/2", 1)));
+
+        assertThat(second.read(0, 100).getHits())
+                .extracting(EndpointHit::getUri)
+                .containsExactly("/events/1", "/events/2");
+    }
+
+    @Test
+    void releasesIndexedSegments() throws IOException {
+        HitCommitLog commitLog = open();
+        for (int i = 0; i < 40; i++) {
+            commitLog.append(List.of(hit("/events/" + "x".repeat(200) + i, 1)));
+        }
+        HitCommitLog.Batch batch = commitLog.read(0, 1000);
+        assertThat(batch.getHits()).hasSize(40);
+        assertThat(segmentCount()).isGreaterThan(1);
+
+        commitLog.release(batch.getNextOffset());
+
+        assertThat(segmentCount()).isEqualTo(1);
+        assertThat(commitLog.read(batch.getNextOffset(), 100).getHits()).isEmpty();
+    }
+
+    private HitCommitLog open() {
+        HitCommitLog commitLog = new HitCommitLog(hitRollupRepository, new SimpleMeterRegistry(), true,
+                dir.toString(), SEGMENT_BYTES);
+        commitLog.recover();
+        return commitLog;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static EndpointHit hit(String uri, int count) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("192.168.0.1")
+                .timestamp(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .count(count)
+                .build();
+    }
+}
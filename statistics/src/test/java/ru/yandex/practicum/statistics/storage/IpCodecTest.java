@@ -0,0 +1,44 @@
+package ru.yandex.practicum.statistics.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IpCodecTest {
+
+    @Test
+    void storesIpv4AsMappedIpv6() {
+        byte[] bytes = IpCodec.encode("192.168.0.1");
+
+        assertThat(bytes).hasSize(IpCodec.LENGTH);
+        assertThat(IpCodec.decode(bytes)).isEqualTo("192.168.0.1");
+        assertThat(IpCodec.encode("::ffff:192.168.0.1")).isEqualTo(bytes);
+    }
+
+    @Test
+    void normalizesIpv6ToCanonicalForm() {
+        assertThat(IpCodec.normalize("2001:0DB8:0000:0000:0000:0000:0000:0001")).isEqualTo("2001:db8::1");
+        assertThat(IpCodec.normalize("2001:db8:0:1:0:0:0:1")).isEqualTo("2001:db8:0:1::1");
+        assertThat(IpCodec.normalize("::")).isEqualTo("::");
+        assertThat(IpCodec.normalize("::ffff:10.0.0.1")).isEqualTo("10.0.0.1");
+        assertThat(IpCodec.decode(IpCodec.encode("fe80::1"))).isEqualTo("fe80::1");
+    }
+
+    @Test
+    void keepsNonIpValuesAsText() {
+        for (String value : new String[]{"unknown", "localhost", "256.0.0.1", "1.2.3", "", "fifteen-bytes!!", "0123456789abcdef"}) {
+            byte[] bytes = IpCodec.encode(value);
+
+            assertThat(bytes.length).isNotEqualTo(IpCodec.LENGTH);
+            assertThat(IpCodec.decode(bytes)).isEqualTo(value);
+            assertThat(IpCodec.normalize(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void rejectsEmptyBytes() {
+        assertThatThrownBy(() -> IpCodec.decode(new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}